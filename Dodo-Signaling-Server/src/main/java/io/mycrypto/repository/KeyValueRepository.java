@@ -1,6 +1,7 @@
 package io.mycrypto.repository;
 
 import java.util.Map;
+import java.util.function.BiPredicate;
 
 public interface KeyValueRepository<K, V> {
 
@@ -11,7 +12,24 @@ public interface KeyValueRepository<K, V> {
     //to be used only when orphan blocks are detected (will only be applicable locally)
     boolean delete(K key, DbName db);
 
+    // copies the whole DB into memory; prefer scan() unless every entry is needed at once
     Map<String, String> getList(DbName db);
 
+    /**
+     * Iterates over the entries of a DB in key order without copying them
+     *
+     * @param db       The DB to iterate over
+     * @param fromKey  The key to start at (or the first key after it if absent); null to start at the first key
+     * @param limit    Maximum number of entries visited; 0 for no limit
+     * @param consumer Called for every entry; The scan stops as soon as it returns false
+     * @return The number of entries visited
+     */
+    int scan(DbName db, K fromKey, int limit, BiPredicate<K, V> consumer);
+
+    /**
+     * Same as {@link #scan(DbName, Object, int, BiPredicate)} but only visits the entries whose key starts with the prefix
+     */
+    int scanPrefix(DbName db, K prefix, int limit, BiPredicate<K, V> consumer);
+
     long getCount(DbName db);
 }
@@ -16,6 +16,7 @@ import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.BiPredicate;
 
 import static io.mycrypto.repository.DbName.*;
 
@@ -137,23 +138,57 @@ public class RocksDBRepositoryImpl implements KeyValueRepository<String, String>
     public Map<String, String> getList(DbName db) {
         log.info("----GET LIST----      DB: {}", db);
         Map<String, String> result = new HashMap<>();
+        scan(db, null, 0, (key, value) -> {
+            result.put(key, value);
+            log.debug("Key: {}, Value: {}", key, value);
+            return true;
+        });
+        return result;
+    }
 
-        RocksIterator itr = null;
+    @Override
+    public int scan(DbName db, String fromKey, int limit, BiPredicate<String, String> consumer) {
+        log.info("----SCAN----      FROM: {}     LIMIT: {}     DB: {}", fromKey, limit, db);
+        return scan(db, fromKey == null ? null : fromKey.getBytes(), null, limit, consumer);
+    }
+
+    @Override
+    public int scanPrefix(DbName db, String prefix, int limit, BiPredicate<String, String> consumer) {
+        log.info("----SCAN PREFIX----      PREFIX: {}     LIMIT: {}     DB: {}", prefix, limit, db);
+        return scan(db, prefix.getBytes(), prefix.getBytes(), limit, consumer);
+    }
+
+    private int scan(DbName db, byte[] fromKey, byte[] prefix, int limit, BiPredicate<String, String> consumer) {
+        RocksDB rocksDB = null;
         switch (db) {
-            case PEER_STATUS -> itr = dbPeerStatus.newIterator();
-            case ICE_CANDIDATES -> itr = dbIceCandidates.newIterator();
-            case PEER_ADDRESSES -> itr = dbPeerAddress.newIterator();
+            case PEER_STATUS -> rocksDB = dbPeerStatus;
+            case ICE_CANDIDATES -> rocksDB = dbIceCandidates;
+            case PEER_ADDRESSES -> rocksDB = dbPeerAddress;
             default -> log.error("Please enter valid DB name");
         }
+        if (rocksDB == null)
+            return 0;
 
-        assert itr != null;
-        itr.seekToFirst();
-        while (itr.isValid()) {
-            result.put(new String(itr.key()), new String(itr.value()));
-            log.info("Key: {}, Value: {}", new String(itr.key()), new String(itr.value()));
-            itr.next();
+        int visited = 0;
+        try (RocksIterator itr = rocksDB.newIterator()) {
+            if (fromKey == null)
+                itr.seekToFirst();
+            else
+                itr.seek(fromKey);
+            for (; itr.isValid() && (limit <= 0 || visited < limit); itr.next()) {
+                byte[] key = itr.key();
+                if (prefix != null && !startsWith(key, prefix))
+                    break;
+                visited++;
+                if (!consumer.test(new String(key), new String(itr.value())))
+                    break;
+            }
         }
-        return result;
+        return visited;
+    }
+
+    private static boolean startsWith(byte[] key, byte[] prefix) {
+        return key.length >= prefix.length && Arrays.equals(key, 0, prefix.length, prefix, 0, prefix.length);
     }
 
     @Override
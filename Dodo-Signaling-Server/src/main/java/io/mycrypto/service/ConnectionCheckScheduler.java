@@ -11,7 +11,6 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
-import java.util.Map;
 
 @Slf4j
 @Service
@@ -35,15 +34,16 @@ public class ConnectionCheckScheduler {
 
             List<String> peers = simpUserRegistry.getUsers().stream().map(SimpUser::getName).toList();
 
-            for (Map.Entry<String, String> entry : rocksDB.getList(DbName.PEER_STATUS).entrySet()) {
-                if (!peers.contains(entry.getKey())
-                        && entry.getValue().equals(PeerStatus.ONLINE.toString()))
+            rocksDB.scan(DbName.PEER_STATUS, null, 0, (dodoAddress, status) -> {
+                if (!peers.contains(dodoAddress)
+                        && status.equals(PeerStatus.ONLINE.toString()))
                     rocksDB.save(
-                            entry.getKey(),
+                            dodoAddress,
                             PeerStatus.OFFLINE.toString(),
                             DbName.PEER_STATUS
                     );
-            }
+                return true;
+            });
         }
     }
 }
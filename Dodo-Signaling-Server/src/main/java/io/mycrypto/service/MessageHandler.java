@@ -13,8 +13,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 
 @Slf4j
@@ -58,14 +58,12 @@ public class MessageHandler {
     }
 
     private void getPeersAndSendToClient(String peer) {
-        List<String> dodoAddresses = rocksDB.getList(DbName.PEER_STATUS)
-                .entrySet().stream()
-                .filter(x ->
-                        !x.getKey().equals(peer) &&
-                                x.getValue().equals(PeerStatus.ONLINE.toString())
-                )
-                .map(Map.Entry::getKey)
-                .toList();
+        List<String> dodoAddresses = new ArrayList<>();
+        rocksDB.scan(DbName.PEER_STATUS, null, 0, (dodoAddress, status) -> {
+            if (!dodoAddress.equals(peer) && status.equals(PeerStatus.ONLINE.toString()))
+                dodoAddresses.add(dodoAddress);
+            return true;
+        });
 
         StompMessage message = null;
         try {
@@ -43,4 +43,70 @@ public class DodoCommonConfig {
 
     @Value("${DEFAULT_OUTPUT_NUM:1}")
     private Integer defaultOutputDivisions;
+
+    @Value("${ROCKSDB_BLOCK_CACHE_SIZE_MB:64}")
+    private Long blockCacheSizeMB;
+
+    @Value("${ROCKSDB_WRITE_BUFFER_SIZE_MB:16}")
+    private Long writeBufferSizeMB;
+
+    @Value("${ROCKSDB_WRITE_BUFFER_MANAGER_SIZE_MB:64}")
+    private Long writeBufferManagerSizeMB;
+
+    @Value("${ROCKSDB_BLOOM_FILTER_BITS_PER_KEY:10}")
+    private Double bloomFilterBitsPerKey;
+
+    @Value("${ROCKSDB_COMPRESSION:LZ4}")
+    private String compression;
+
+    @Value("${ROCKSDB_BOTTOMMOST_COMPRESSION:ZSTD}")
+    private String bottommostCompression;
+
+    @Value("${ROCKSDB_STATISTICS_LEVEL:EXCEPT_DETAILED_TIMERS}")
+    private String statisticsLevel;
+
+    @Value("${ROCKSDB_TTL_SECONDS:}")
+    private String ttlSeconds;
+
+    @Value("${ROCKSDB_SHARDS:1}")
+    private Integer shards;
+
+    @Value("${RESTORE_FROM_CHECKPOINT:}")
+    private String restoreFromCheckpoint;
+
+    @Value("${CHECKPOINT_INCLUDE_KEYS:false}")
+    private Boolean checkpointIncludeKeys;
+
+    @Value("${QUERY_ONLY:false}")
+    private Boolean queryOnly;
+
+    @Value("${READ_CACHE_MAX_ENTRIES:}")
+    private String readCacheMaxEntries;
+
+    @Value("${REPOSITORY_IO_THREADS:4}")
+    private Integer repositoryIoThreads;
+
+    @Value("${REPOSITORY_IO_QUEUE_CAPACITY:1024}")
+    private Integer repositoryIoQueueCapacity;
+
+    @Value("${REPOSITORY_IO_SUBMIT_TIMEOUT_MS:5000}")
+    private Long repositoryIoSubmitTimeoutMs;
+
+    @Value("${ACCOUNTS_FOLD_THRESHOLD:64}")
+    private Integer accountsFoldThreshold;
+
+    @Value("${SCHEMA_MIGRATION_BATCH_SIZE:1000}")
+    private Integer schemaMigrationBatchSize;
+
+    @Value("${MAINTENANCE_TOMBSTONE_RATIO:0.3}")
+    private Double maintenanceTombstoneRatio;
+
+    @Value("${MAINTENANCE_MIN_TOMBSTONES:1000}")
+    private Long maintenanceMinTombstones;
+
+    @Value("${BLOCK_FILE_MAX_SIZE_MB:128}")
+    private Long blockFileMaxSizeMB;
+
+    @Value("${BLOCK_FILE_MAPPED_SEGMENTS:16}")
+    private Integer blockFileMappedSegments;
 }
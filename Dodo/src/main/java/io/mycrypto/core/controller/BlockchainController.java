@@ -165,6 +165,27 @@ public class BlockchainController {
         return service.getTransactionsCountInTransactionsPool();
     }
 
+    /**
+     * On-disk size, entries and tombstones (deleted keys not yet compacted away) of each DB
+     *
+     * @return HTTP response
+     */
+    @GetMapping("get-storage-size")
+    public ResponseEntity<Object> getStorageSize() {
+        return service.getStorageSize();
+    }
+
+    /**
+     * Takes a checkpoint of all the DBs along with the block files; A new node started with RESTORE_FROM_CHECKPOINT
+     * pointing to it comes up with the same state without replaying the chain
+     *
+     * @return HTTP response
+     */
+    @PostMapping("create-checkpoint")
+    public ResponseEntity<Object> createCheckpoint() {
+        return service.createCheckpoint();
+    }
+
     // -----------------------------------------------------------------------------------------------------------------
 
     /**
@@ -0,0 +1,118 @@
+package io.mycrypto.core.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merge operands of the ACCOUNTS DB; Instead of reading, updating and rewriting the whole JSON of an address ({ transactionId: "VOUT_1,VOUT_2" })
+ * for every UTXO gained or spent, the outpoint is appended to the entry as an operand and the operands are folded into the JSON when it is read. <br>
+ * StringAppendOperator only concatenates, so an entry holding more than ACCOUNTS_FOLD_THRESHOLD operands is written back as the JSON it resolves to
+ * the next time it is written to
+ */
+@Slf4j
+public final class AccountsMerge {
+    static final char DELIMITER = '\n'; // operands are appended by RocksDB's StringAppendOperator
+    private static final char ADD = '+';
+    private static final char REMOVE = '-';
+    private static final String EMPTY = "EMPTY";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private AccountsMerge() {
+    }
+
+    /**
+     * @return Operand crediting the output (transactionId, vout) to the address
+     */
+    public static String add(String transactionId, long vout) {
+        return ADD + transactionId + ":" + vout;
+    }
+
+    /**
+     * @return Operand removing the output (transactionId, vout) from the address once it is spent
+     */
+    public static String remove(String transactionId, long vout) {
+        return REMOVE + transactionId + ":" + vout;
+    }
+
+    /**
+     * Folds the operands appended to an entry into its JSON;
+     * The result is "EMPTY" if no outputs are left, as it is for an address that never received any
+     */
+    static byte[] resolve(byte[] value) {
+        String entry = new String(value, StandardCharsets.UTF_8);
+        int head = head(entry);
+        if (head == entry.length())
+            return value;
+
+        Map<String, List<String>> outputs = new LinkedHashMap<>();
+        String written = entry.substring(0, head);
+        if (!written.isEmpty() && !written.equals(EMPTY)) {
+            try {
+                MAPPER.readValue(written, new TypeReference<LinkedHashMap<String, String>>() {
+                }).forEach((transactionId, vouts) -> outputs.put(transactionId, new ArrayList<>(List.of(vouts.split(",")))));
+            } catch (JsonProcessingException exception) {
+                log.error("Error while parsing Accounts entry {} to JSON", written, exception);
+                return value;
+            }
+        }
+
+        for (String operand : entry.substring(head == 0 ? 0 : head + 1).split(String.valueOf(DELIMITER))) {
+            int separator = operand.lastIndexOf(':');
+            String transactionId = operand.substring(1, separator);
+            String vout = operand.substring(separator + 1);
+            if (operand.charAt(0) == ADD) {
+                List<String> vouts = outputs.computeIfAbsent(transactionId, k -> new ArrayList<>());
+                if (!vouts.contains(vout))
+                    vouts.add(vout);
+            } else {
+                List<String> vouts = outputs.get(transactionId);
+                if (vouts != null && vouts.remove(vout) && vouts.isEmpty())
+                    outputs.remove(transactionId);
+            }
+        }
+
+        if (outputs.isEmpty())
+            return EMPTY.getBytes(StandardCharsets.UTF_8);
+        Map<String, String> json = new LinkedHashMap<>();
+        outputs.forEach((transactionId, vouts) -> json.put(transactionId, String.join(",", vouts)));
+        try {
+            return MAPPER.writeValueAsBytes(json);
+        } catch (JsonProcessingException exception) {
+            log.error("Error while writing Accounts entry as JSON", exception);
+            return value;
+        }
+    }
+
+    /**
+     * @return Number of operands appended to the entry since it was last written as a whole
+     */
+    static int operands(byte[] value) {
+        String entry = new String(value, StandardCharsets.UTF_8);
+        int operands = 0;
+        for (int i = head(entry); i < entry.length(); i++)
+            if (entry.charAt(i) == DELIMITER)
+                operands++;
+        return operands;
+    }
+
+    // length of the JSON (or "EMPTY") the operands were appended to; JSON written before schema version 2 is pretty-printed
+    // and spans several lines, of which only the last one ends with the closing brace
+    private static int head(String entry) {
+        if (isOperand(entry))
+            return 0;
+        int end = entry.startsWith("{") ? entry.indexOf("}" + DELIMITER) + 1 : entry.indexOf(DELIMITER);
+        return end <= 0 ? entry.length() : end;
+    }
+
+    private static boolean isOperand(String part) {
+        return !part.isEmpty() && (part.charAt(0) == ADD || part.charAt(0) == REMOVE);
+    }
+}
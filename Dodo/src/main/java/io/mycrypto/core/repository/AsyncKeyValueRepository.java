@@ -0,0 +1,153 @@
+package io.mycrypto.core.repository;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.mycrypto.core.config.DodoCommonConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous facade over the String {@link KeyValueRepository}; Every call runs on a bounded pool of I/O threads so that
+ * threads which must not wait on the disk (e.g. WebSocket inbound threads) only hand the work over. <br>
+ * Once REPOSITORY_IO_QUEUE_CAPACITY calls are waiting, the caller is blocked until there is room for its call, for up to REPOSITORY_IO_SUBMIT_TIMEOUT_MS,
+ * after which the call is rejected: the future returned fails with a RejectedExecutionException. Calls never run on the caller's thread.
+ * A call made from an I/O thread (e.g. by a continuation of an earlier call) is rejected right away instead, as the I/O threads are the ones making room.
+ * The depth of the queue is published as repository.io.queue.depth and the calls rejected as repository.io.rejected
+ */
+@Slf4j
+@Repository
+public class AsyncKeyValueRepository implements MeterBinder {
+
+    @Autowired
+    private KeyValueRepository<String, String> repository;
+    @Autowired
+    private DodoCommonConfig config;
+
+    private ThreadPoolExecutor executor;
+    private final Set<Thread> ioThreads = ConcurrentHashMap.newKeySet();
+    private final AtomicLong rejected = new AtomicLong();
+
+    @PostConstruct
+    void initialize() {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(
+                config.getRepositoryIoThreads(),
+                config.getRepositoryIoThreads(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(config.getRepositoryIoQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "repository-io-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    ioThreads.add(thread);
+                    return thread;
+                },
+                this::waitForRoom
+        );
+        log.info("Repository I/O executor started with {} threads", config.getRepositoryIoThreads());
+    }
+
+    /**
+     * Waits for the calls already handed over to finish before the repository below is closed
+     */
+    @PreDestroy
+    void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS))
+                log.warn("{} repository calls were still pending on shutdown", executor.shutdownNow().size());
+        } catch (InterruptedException e) {
+            log.error("Interrupted while waiting for the pending repository calls", e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public CompletableFuture<Void> save(String key, String value, DbName db) {
+        return run(() -> repository.save(key, value, db));
+    }
+
+    public CompletableFuture<String> find(String key, DbName db) {
+        return supply(() -> repository.find(key, db));
+    }
+
+    public CompletableFuture<List<String>> multiFind(List<String> keys, DbName db) {
+        return supply(() -> repository.multiFind(keys, db));
+    }
+
+    public CompletableFuture<Void> merge(String key, String operand, DbName db) {
+        return run(() -> repository.merge(key, operand, db));
+    }
+
+    public CompletableFuture<Boolean> delete(String key, DbName db) {
+        return supply(() -> repository.delete(key, db));
+    }
+
+    public CompletableFuture<Long> getCount(DbName db) {
+        return supply(() -> repository.getCount(db));
+    }
+
+    private CompletableFuture<Void> run(Runnable call) {
+        try {
+            return CompletableFuture.runAsync(call, executor);
+        } catch (RejectedExecutionException e) {
+            log.error("Repository call rejected, message: {}", e.getMessage());
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private <T> CompletableFuture<T> supply(Supplier<T> call) {
+        try {
+            return CompletableFuture.supplyAsync(call, executor);
+        } catch (RejectedExecutionException e) {
+            log.error("Repository call rejected, message: {}", e.getMessage());
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    // invoked by the executor once its queue is full; blocks the submitter until the queue has room instead of running the call on its thread
+    private void waitForRoom(Runnable call, ThreadPoolExecutor executor) {
+        if (executor.isShutdown())
+            throw new RejectedExecutionException("Repository I/O executor is shut down");
+        if (ioThreads.contains(Thread.currentThread())) {
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException("Repository I/O queue is full; Calls made from an I/O thread do not wait for room");
+        }
+        try {
+            if (executor.getQueue().offer(call, config.getRepositoryIoSubmitTimeoutMs(), TimeUnit.MILLISECONDS))
+                return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException("Interrupted while waiting for room in the repository I/O queue", e);
+        }
+        rejected.incrementAndGet();
+        throw new RejectedExecutionException(String.format("Repository I/O queue stayed full for %d ms", config.getRepositoryIoSubmitTimeoutMs()));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("repository.io.queue.depth", this, r -> r.executor.getQueue().size())
+                .description("Repository calls waiting for an I/O thread")
+                .register(registry);
+        Gauge.builder("repository.io.active", this, r -> r.executor.getActiveCount())
+                .description("I/O threads running a repository call")
+                .register(registry);
+        FunctionCounter.builder("repository.io.completed", this, r -> r.executor.getCompletedTaskCount())
+                .description("Repository calls completed by the I/O threads")
+                .register(registry);
+        FunctionCounter.builder("repository.io.rejected", rejected, AtomicLong::get)
+                .description("Repository calls rejected as the queue stayed full for REPOSITORY_IO_SUBMIT_TIMEOUT_MS")
+                .register(registry);
+    }
+}
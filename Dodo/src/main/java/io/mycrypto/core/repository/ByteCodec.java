@@ -0,0 +1,73 @@
+package io.mycrypto.core.repository;
+
+import org.bitcoinj.core.Base58;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+
+/**
+ * Conversions between the String form of keys/values used across the application and the bytes stored in the DB;
+ * Hashes and addresses are stored in their raw form (48 bytes for a SHA-384 transaction id, 32 bytes for a SHA-256 block hash,
+ * 25 bytes for a dodo-coin address) instead of the bytes of their hex/Base58 representation
+ */
+public enum ByteCodec {
+    UTF8 {
+        @Override
+        byte[] toBytes(String value) {
+            return value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        String toString(byte[] bytes) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    },
+    HEX {
+        @Override
+        byte[] toBytes(String value) {
+            return HexFormat.of().parseHex(value);
+        }
+
+        @Override
+        String toString(byte[] bytes) {
+            return HexFormat.of().formatHex(bytes);
+        }
+    },
+    BASE58 {
+        @Override
+        byte[] toBytes(String value) {
+            return Base58.decode(value);
+        }
+
+        @Override
+        String toString(byte[] bytes) {
+            return Base58.encode(bytes);
+        }
+    };
+
+    /**
+     * @return The codec of the keys stored in the DB
+     */
+    public static ByteCodec keyOf(DbName db) {
+        return switch (db) {
+            case BLOCKCHAIN, BLOCK_HEADERS, TRANSACTIONS, TRANSACTIONS_POOL -> HEX;
+            case ACCOUNTS -> BASE58;
+            default -> UTF8;
+        };
+    }
+
+    /**
+     * @throws IllegalArgumentException if the value is not valid for this codec (e.g. a malformed hash or address)
+     */
+    public byte[] encode(String value) {
+        return value == null ? null : toBytes(value);
+    }
+
+    public String decode(byte[] bytes) {
+        return bytes == null ? null : toString(bytes);
+    }
+
+    abstract byte[] toBytes(String value);
+
+    abstract String toString(byte[] bytes);
+}
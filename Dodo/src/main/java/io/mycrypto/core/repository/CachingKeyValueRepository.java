@@ -0,0 +1,242 @@
+package io.mycrypto.core.repository;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import io.mycrypto.core.config.DodoCommonConfig;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+
+/**
+ * Size bounded read cache in front of {@link RocksDBRepositoryImpl} for the DBs listed in READ_CACHE_MAX_ENTRIES;
+ * Absent keys are cached as well (e.g. lookups of foreign addresses in NODES). An entry is invalidated whenever its key is written,
+ * either directly or when a batch writing it is committed. <br>
+ * Every invalidation bumps the generation of the cache of its DB; Values read from the DB are only kept in the cache if no invalidation
+ * happened while they were read, so that a value read before a write is not cached after the write invalidated it. <br>
+ * The hits, misses and evictions of each cache are published as the Micrometer cache.* meters, tagged with its DbName (see /actuator/metrics/cache.gets)
+ */
+@Slf4j
+@Primary
+@Repository
+@Profile("!" + InMemoryKeyValueRepository.PROFILE)
+public class CachingKeyValueRepository implements KeyValueRepository<byte[], byte[]>, MeterBinder {
+
+    @Autowired
+    private RocksDBRepositoryImpl repository;
+    @Autowired
+    private DodoCommonConfig config;
+
+    private final Map<DbName, Cache<ByteBuffer, Optional<byte[]>>> caches = new EnumMap<>(DbName.class);
+    private final Map<DbName, AtomicLong> generations = new EnumMap<>(DbName.class);
+
+    @PostConstruct
+    void initialize() {
+        // the entries are written by the primary node, which cannot invalidate them
+        if (config.getQueryOnly()) {
+            log.info("Read cache disabled in query-only mode");
+            return;
+        }
+        // <DbName>:<max entries>,<DbName>:<max entries>,...
+        for (String entry : config.getReadCacheMaxEntries().split(",")) {
+            if (entry.isBlank())
+                continue;
+            String[] parts = entry.split(":");
+            try {
+                DbName db = DbName.valueOf(parts[0].trim().toUpperCase());
+                CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+                        .maximumSize(Long.parseLong(parts[1].trim()))
+                        .recordStats();
+                // a cached entry of a DB with a TTL does not outlive the entry it was loaded from by more than the TTL
+                Long ttlSeconds = repository.ttlSeconds(db);
+                if (ttlSeconds != null)
+                    builder.expireAfterWrite(ttlSeconds, TimeUnit.SECONDS);
+                caches.put(db, builder.build());
+                generations.put(db, new AtomicLong());
+            } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                log.error("Invalid read cache configuration {}; expected <DbName>:<max entries>", entry);
+            }
+        }
+        log.info("Read cache enabled for {}", caches.keySet());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        caches.forEach((db, cache) -> GuavaCacheMetrics.monitor(registry, cache, "read-cache", "db", db.name()));
+    }
+
+    @Override
+    public void save(byte[] key, byte[] value, DbName db) {
+        repository.save(key, value, db);
+        invalidate(key, db);
+    }
+
+    @Override
+    public byte[] find(byte[] key, DbName db) {
+        Cache<ByteBuffer, Optional<byte[]>> cache = caches.get(db);
+        if (cache == null)
+            return repository.find(key, db);
+        Optional<byte[]> cached = cache.getIfPresent(ByteBuffer.wrap(key));
+        if (cached != null)
+            return cached.orElse(null);
+
+        long generation = generations.get(db).get();
+        byte[] value = repository.find(key, db);
+        populate(db, generation, List.of(key), Collections.singletonList(value));
+        return value;
+    }
+
+    @Override
+    public List<byte[]> multiFind(List<byte[]> keys, DbName db) {
+        Cache<ByteBuffer, Optional<byte[]>> cache = caches.get(db);
+        if (cache == null)
+            return repository.multiFind(keys, db);
+
+        List<byte[]> result = new ArrayList<>(Collections.nCopies(keys.size(), null));
+        List<Integer> positions = new ArrayList<>();
+        List<byte[]> missing = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            Optional<byte[]> cached = cache.getIfPresent(ByteBuffer.wrap(keys.get(i)));
+            if (cached != null) {
+                result.set(i, cached.orElse(null));
+            } else {
+                positions.add(i);
+                missing.add(keys.get(i));
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            long generation = generations.get(db).get();
+            List<byte[]> values = repository.multiFind(missing, db);
+            for (int i = 0; i < values.size(); i++)
+                result.set(positions.get(i), values.get(i));
+            populate(db, generation, missing, values);
+        }
+        return result;
+    }
+
+    @Override
+    public void merge(byte[] key, byte[] operand, DbName db) {
+        repository.merge(key, operand, db);
+        invalidate(key, db);
+    }
+
+    @Override
+    public boolean delete(byte[] key, DbName db) {
+        boolean deleted = repository.delete(key, db);
+        invalidate(key, db);
+        return deleted;
+    }
+
+    @Override
+    public Map<byte[], byte[]> getList(DbName db) {
+        return repository.getList(db);
+    }
+
+    @Override
+    public int scan(DbName db, byte[] fromKey, int limit, BiPredicate<byte[], byte[]> consumer) {
+        return repository.scan(db, fromKey, limit, consumer);
+    }
+
+    @Override
+    public int scanPrefix(DbName db, byte[] prefix, int limit, BiPredicate<byte[], byte[]> consumer) {
+        return repository.scanPrefix(db, prefix, limit, consumer);
+    }
+
+    @Override
+    public long getCount(DbName db) {
+        return repository.getCount(db);
+    }
+
+    @Override
+    public KeyValueBatch<byte[], byte[]> beginBatch() {
+        return new CachingBatch(repository.beginBatch());
+    }
+
+    // reads through a snapshot bypass the cache as cached entries may be newer than the snapshot
+    @Override
+    public KeyValueSnapshot<byte[], byte[]> openSnapshot() {
+        return repository.openSnapshot();
+    }
+
+    /**
+     * Caches the values read from the DB unless an entry of the DB was invalidated since the generation was read (before the values were).
+     * They are put first and dropped again if the generation moved on: a write invalidating its key after the check comes after the put
+     */
+    private void populate(DbName db, long generation, List<byte[]> keys, List<byte[]> values) {
+        Cache<ByteBuffer, Optional<byte[]>> cache = caches.get(db);
+        for (int i = 0; i < values.size(); i++)
+            cache.put(ByteBuffer.wrap(keys.get(i)), Optional.ofNullable(values.get(i)));
+        if (generations.get(db).get() != generation)
+            keys.forEach(key -> cache.invalidate(ByteBuffer.wrap(key)));
+    }
+
+    private void invalidate(byte[] key, DbName db) {
+        Cache<ByteBuffer, Optional<byte[]>> cache = caches.get(db);
+        if (cache == null)
+            return;
+        generations.get(db).incrementAndGet();
+        cache.invalidate(ByteBuffer.wrap(key));
+    }
+
+    // keeps track of the keys written through the batch so that they can be invalidated once it is committed
+    private class CachingBatch implements KeyValueBatch<byte[], byte[]> {
+        private final KeyValueBatch<byte[], byte[]> batch;
+        private final Map<DbName, List<byte[]>> written = new EnumMap<>(DbName.class);
+
+        CachingBatch(KeyValueBatch<byte[], byte[]> batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public void save(byte[] key, byte[] value, DbName db) {
+            batch.save(key, value, db);
+            written(key, db);
+        }
+
+        @Override
+        public byte[] find(byte[] key, DbName db) {
+            return batch.find(key, db);
+        }
+
+        @Override
+        public void delete(byte[] key, DbName db) {
+            batch.delete(key, db);
+            written(key, db);
+        }
+
+        @Override
+        public void merge(byte[] key, byte[] operand, DbName db) {
+            batch.merge(key, operand, db);
+            written(key, db);
+        }
+
+        @Override
+        public boolean commit() {
+            boolean committed = batch.commit();
+            written.forEach((db, keys) -> keys.forEach(key -> invalidate(key, db)));
+            return committed;
+        }
+
+        @Override
+        public void close() {
+            batch.close();
+        }
+
+        private void written(byte[] key, DbName db) {
+            if (caches.containsKey(db))
+                written.computeIfAbsent(db, k -> new ArrayList<>()).add(key);
+        }
+    }
+}
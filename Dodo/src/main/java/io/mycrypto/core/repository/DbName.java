@@ -1,9 +1,10 @@
 package io.mycrypto.core.repository;
 
 public enum DbName {
-    BLOCKCHAIN,         // Block-Hash ==> block path
-    TRANSACTIONS,       // Transaction-Hash ==> Transaction Data (as JSON)
-    TRANSACTIONS_POOL,  // Transaction-Hash ==> Transaction Data (as JSON)
+    BLOCKCHAIN,         // Block-Hash ==> "file:offset:length" of the block in the block files
+    BLOCK_HEADERS,      // Block-Hash ==> Block Header, every field of the block but its transactions (encoded by RecordCodec)
+    TRANSACTIONS,       // Transaction-Hash ==> Transaction Data (encoded by RecordCodec)
+    TRANSACTIONS_POOL,  // Transaction-Hash ==> Transaction Data (encoded by RecordCodec)
     NODES,              // Wallet Address ==> ("IP Address" if foreign | "Wallet Name" if owned)
     WALLETS,            // Wallet-Name ==> "PubKey PrvKey hash-160 dodo-coin-address"
     ACCOUNTS,           // (as JSON) 👇
@@ -0,0 +1,347 @@
+package io.mycrypto.core.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiPredicate;
+
+import static io.mycrypto.core.repository.DbName.ACCOUNTS;
+
+/**
+ * {@link KeyValueRepository} keeping every DB in a concurrent skip-list in place of RocksDB; Selected with the "in-memory" Spring profile
+ * so that many nodes can be run in one JVM (load simulations, tests) without booting the native library. Nothing is persisted. <br>
+ * Writes, single or batched, are applied under an exclusive lock so that point reads never see a half applied batch;
+ * Scans are weakly consistent, like iterating over the skip-list itself. <br>
+ * Snapshots are versioned: a write preserves the value it replaces in every open snapshot, which reads it in place of the DB
+ */
+@Slf4j
+@Repository
+@Profile(InMemoryKeyValueRepository.PROFILE)
+public class InMemoryKeyValueRepository implements KeyValueRepository<byte[], byte[]> {
+    public static final String PROFILE = "in-memory";
+
+    private final Map<DbName, ConcurrentNavigableMap<byte[], byte[]>> dbs = new EnumMap<>(DbName.class);
+    private final Map<DbName, AtomicLong> counts = new EnumMap<>(DbName.class);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Set<InMemorySnapshot> snapshots = ConcurrentHashMap.newKeySet();
+
+    public InMemoryKeyValueRepository() {
+        // block files and keys are still written to disk
+        RocksDBRepositoryImpl.createResourceFolder();
+        for (DbName db : RocksDBRepositoryImpl.COLUMN_FAMILIES) {
+            dbs.put(db, new ConcurrentSkipListMap<>(Arrays::compareUnsigned));
+            counts.put(db, new AtomicLong());
+        }
+        log.info("In-memory DBs initialized for {}", RocksDBRepositoryImpl.COLUMN_FAMILIES);
+    }
+
+    private ConcurrentNavigableMap<byte[], byte[]> db(DbName dbName) {
+        ConcurrentNavigableMap<byte[], byte[]> db = dbs.get(dbName);
+        if (db == null)
+            throw new IllegalArgumentException(String.format("%s is not a valid DB name", dbName));
+        return db;
+    }
+
+    @Override
+    public void save(byte[] key, byte[] value, DbName db) {
+        log.debug("----SAVE----      KEY: {}     VALUE: {}     DB: {}", RocksDBRepositoryImpl.printable(key, db), RocksDBRepositoryImpl.printable(value), db);
+        write(List.of(new Write(Operation.SAVE, key, value, db)));
+    }
+
+    @Override
+    public byte[] find(byte[] key, DbName db) {
+        log.debug("----FIND----      KEY: {}     DB: {}", RocksDBRepositoryImpl.printable(key, db), db);
+        lock.readLock().lock();
+        try {
+            return db(db).get(key);
+        } catch (IllegalArgumentException e) {
+            log.error("Please enter valid DB name");
+        } finally {
+            lock.readLock().unlock();
+        }
+        return null;
+    }
+
+    @Override
+    public List<byte[]> multiFind(List<byte[]> keys, DbName db) {
+        log.debug("----MULTI FIND----      KEYS: {}     DB: {}", keys.size(), db);
+        lock.readLock().lock();
+        try {
+            return findAll(keys, db);
+        } catch (IllegalArgumentException e) {
+            log.error("Please enter valid DB name");
+        } finally {
+            lock.readLock().unlock();
+        }
+        return Collections.nCopies(keys.size(), null);
+    }
+
+    private List<byte[]> findAll(List<byte[]> keys, DbName db) {
+        ConcurrentNavigableMap<byte[], byte[]> entries = db(db);
+        List<byte[]> values = new ArrayList<>(keys.size());
+        for (byte[] key : keys)
+            values.add(entries.get(key));
+        return values;
+    }
+
+    @Override
+    public void merge(byte[] key, byte[] operand, DbName db) {
+        log.debug("----MERGE----      KEY: {}     OPERAND: {}     DB: {}", RocksDBRepositoryImpl.printable(key, db), RocksDBRepositoryImpl.printable(operand), db);
+        write(List.of(new Write(Operation.MERGE, key, operand, db)));
+    }
+
+    @Override
+    public boolean delete(byte[] key, DbName db) {
+        log.debug("----DELETE----      KEY: {}     DB: {}", RocksDBRepositoryImpl.printable(key, db), db);
+        return write(List.of(new Write(Operation.DELETE, key, null, db)));
+    }
+
+    /**
+     * Applies the writes in order, atomically with respect to point reads and snapshots
+     *
+     * @return false if any of the writes targets an invalid DB, in which case nothing is written
+     */
+    boolean write(List<Write> writes) {
+        for (Write write : writes) {
+            if (!dbs.containsKey(write.db())) {
+                log.error("Please enter valid DB name");
+                return false;
+            }
+            if (write.operation() == Operation.MERGE && write.db() != ACCOUNTS) {
+                log.error("Merge is not supported by {}", write.db());
+                return false;
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (Write write : writes)
+                apply(write);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return true;
+    }
+
+    private void apply(Write write) {
+        ConcurrentNavigableMap<byte[], byte[]> entries = dbs.get(write.db());
+        AtomicLong count = counts.get(write.db());
+        for (InMemorySnapshot snapshot : snapshots)
+            snapshot.preserve(write.db(), write.key(), entries.get(write.key()));
+        switch (write.operation()) {
+            case SAVE -> {
+                if (entries.put(write.key(), write.value()) == null)
+                    count.incrementAndGet();
+            }
+            case DELETE -> {
+                if (entries.remove(write.key()) != null)
+                    count.decrementAndGet();
+            }
+            case MERGE -> {
+                byte[] previous = entries.get(write.key());
+                entries.put(write.key(), merged(previous, write.value()));
+                if (previous == null)
+                    count.incrementAndGet();
+            }
+        }
+    }
+
+    // the operand is folded right away, as RocksDB would during compaction; reads never see unresolved operands
+    static byte[] merged(byte[] previous, byte[] operand) {
+        if (previous == null)
+            return AccountsMerge.resolve(operand);
+        byte[] value = Arrays.copyOf(previous, previous.length + 1 + operand.length);
+        value[previous.length] = AccountsMerge.DELIMITER;
+        System.arraycopy(operand, 0, value, previous.length + 1, operand.length);
+        return AccountsMerge.resolve(value);
+    }
+
+    @Override
+    public Map<byte[], byte[]> getList(DbName db) {
+        log.debug("----GET LIST----      DB: {}", db);
+        Map<byte[], byte[]> result = new TreeMap<>(Arrays::compareUnsigned);
+        scan(db, null, 0, (key, value) -> {
+            result.put(key, value);
+            return true;
+        });
+        return result;
+    }
+
+    @Override
+    public int scan(DbName db, byte[] fromKey, int limit, BiPredicate<byte[], byte[]> consumer) {
+        log.debug("----SCAN----      FROM: {}     LIMIT: {}     DB: {}", RocksDBRepositoryImpl.printable(fromKey, db), limit, db);
+        return scan(db, fromKey, null, limit, consumer);
+    }
+
+    @Override
+    public int scanPrefix(DbName db, byte[] prefix, int limit, BiPredicate<byte[], byte[]> consumer) {
+        log.debug("----SCAN PREFIX----      PREFIX: {}     LIMIT: {}     DB: {}", RocksDBRepositoryImpl.printable(prefix, db), limit, db);
+        return scan(db, prefix, prefix, limit, consumer);
+    }
+
+    private int scan(DbName db, byte[] fromKey, byte[] prefix, int limit, BiPredicate<byte[], byte[]> consumer) {
+        int visited = 0;
+        try {
+            ConcurrentNavigableMap<byte[], byte[]> entries = fromKey == null ? db(db) : db(db).tailMap(fromKey, true);
+            for (Map.Entry<byte[], byte[]> entry : entries.entrySet()) {
+                if (limit > 0 && visited >= limit)
+                    break;
+                byte[] key = entry.getKey();
+                if (prefix != null && !Arrays.equals(key, 0, Math.min(key.length, prefix.length), prefix, 0, prefix.length))
+                    break;
+                visited++;
+                if (!consumer.test(key, entry.getValue()))
+                    break;
+            }
+        } catch (IllegalArgumentException e) {
+            log.error("Please enter valid DB name");
+        }
+        return visited;
+    }
+
+    @Override
+    public long getCount(DbName db) {
+        AtomicLong count = counts.get(db);
+        if (count == null) {
+            log.error("Please enter valid DB name");
+            return 0L;
+        }
+        return count.get();
+    }
+
+    @Override
+    public KeyValueBatch<byte[], byte[]> beginBatch() {
+        return new InMemoryBatch();
+    }
+
+    /**
+     * Opened between writes; No lock is held while it is open, writers only preserve the values they replace in it until it is closed
+     */
+    @Override
+    public KeyValueSnapshot<byte[], byte[]> openSnapshot() {
+        lock.readLock().lock();
+        try {
+            InMemorySnapshot snapshot = new InMemorySnapshot();
+            snapshots.add(snapshot);
+            return snapshot;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // reads the values preserved by the writes made since it was opened, and the DB for the keys that were not written since
+    private class InMemorySnapshot implements KeyValueSnapshot<byte[], byte[]> {
+        private final Map<DbName, Map<ByteBuffer, Optional<byte[]>>> preserved = new EnumMap<>(DbName.class);
+
+        // called under the write lock before the key is written; only the value the key had when the snapshot was opened is kept
+        void preserve(DbName db, byte[] key, byte[] value) {
+            preserved.computeIfAbsent(db, k -> new HashMap<>()).putIfAbsent(ByteBuffer.wrap(key), Optional.ofNullable(value));
+        }
+
+        @Override
+        public byte[] find(byte[] key, DbName db) {
+            lock.readLock().lock();
+            try {
+                return get(key, db);
+            } catch (IllegalArgumentException e) {
+                log.error("Please enter valid DB name");
+            } finally {
+                lock.readLock().unlock();
+            }
+            return null;
+        }
+
+        @Override
+        public List<byte[]> multiFind(List<byte[]> keys, DbName db) {
+            lock.readLock().lock();
+            try {
+                List<byte[]> values = new ArrayList<>(keys.size());
+                for (byte[] key : keys)
+                    values.add(get(key, db));
+                return values;
+            } catch (IllegalArgumentException e) {
+                log.error("Please enter valid DB name");
+            } finally {
+                lock.readLock().unlock();
+            }
+            return Collections.nCopies(keys.size(), null);
+        }
+
+        private byte[] get(byte[] key, DbName db) {
+            ConcurrentNavigableMap<byte[], byte[]> entries = db(db);
+            Map<ByteBuffer, Optional<byte[]>> values = preserved.get(db);
+            Optional<byte[]> value = values == null ? null : values.get(ByteBuffer.wrap(key));
+            return value != null ? value.orElse(null) : entries.get(key);
+        }
+
+        @Override
+        public void close() {
+            snapshots.remove(this);
+        }
+    }
+
+    enum Operation {
+        SAVE, DELETE, MERGE
+    }
+
+    record Write(Operation operation, byte[] key, byte[] value, DbName db) {
+    }
+
+    // writes are recorded and applied in order on commit; reads through the batch replay its writes of the key on top of the DB
+    private class InMemoryBatch implements KeyValueBatch<byte[], byte[]> {
+        private final List<Write> writes = new ArrayList<>();
+        private boolean committed = false;
+
+        @Override
+        public void save(byte[] key, byte[] value, DbName db) {
+            writes.add(new Write(Operation.SAVE, key, value, db));
+        }
+
+        @Override
+        public byte[] find(byte[] key, DbName db) {
+            byte[] value = InMemoryKeyValueRepository.this.find(key, db);
+            for (Write write : writes) {
+                if (write.db() != db || !Arrays.equals(write.key(), key))
+                    continue;
+                value = switch (write.operation()) {
+                    case SAVE -> write.value();
+                    case DELETE -> null;
+                    case MERGE -> merged(value, write.value());
+                };
+            }
+            return value;
+        }
+
+        @Override
+        public void delete(byte[] key, DbName db) {
+            writes.add(new Write(Operation.DELETE, key, null, db));
+        }
+
+        @Override
+        public void merge(byte[] key, byte[] operand, DbName db) {
+            writes.add(new Write(Operation.MERGE, key, operand, db));
+        }
+
+        @Override
+        public boolean commit() {
+            log.debug("----BATCH COMMIT----      ENTRIES: {}", writes.size());
+            committed = write(writes);
+            return committed;
+        }
+
+        @Override
+        public void close() {
+            if (!committed && !writes.isEmpty())
+                log.warn("Discarding {} uncommitted entries of batch", writes.size());
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package io.mycrypto.core.repository;
+
+import com.google.common.util.concurrent.Striped;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Striped locks for guarding read-modify-write sequences on a single key (e.g. the UTXO JSON of an address in ACCOUNTS);
+ * Writes to the repository itself do not need them, they only serialize callers touching the same key
+ */
+@Component
+public class KeyLocks {
+    private static final int STRIPES = 1024;
+
+    private final Striped<Lock> stripes = Striped.lock(STRIPES);
+
+    public Held acquire(DbName db, String key) {
+        return acquire(db, List.of(key));
+    }
+
+    /**
+     * Acquires the locks of all the keys; The stripes are always locked in the same order, so callers locking several keys cannot deadlock each other
+     *
+     * @param db   The DB the keys belong to
+     * @param keys Keys to lock
+     * @return The locks held; To be released through {@link Held#release()} in a finally block
+     */
+    public Held acquire(DbName db, Collection<String> keys) {
+        List<Lock> locks = new ArrayList<>();
+        for (Lock lock : stripes.bulkGet(keys.stream().map(key -> db + ":" + key).toList())) {
+            lock.lock();
+            locks.add(lock);
+        }
+        return new Held(locks);
+    }
+
+    public static class Held {
+        private final List<Lock> locks;
+
+        private Held(List<Lock> locks) {
+            this.locks = locks;
+        }
+
+        public void release() {
+            for (int i = locks.size() - 1; i >= 0; i--)
+                locks.get(i).unlock();
+            locks.clear();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package io.mycrypto.core.repository;
+
+/**
+ * A unit of work spanning any number of keys across DBs;
+ * Nothing is written until {@link #commit()} is called, at which point all the writes are applied atomically
+ */
+public interface KeyValueBatch<K, V> extends AutoCloseable {
+
+    void save(K key, V value, DbName db);
+
+    // reads through the batch; writes made within the batch are visible before they are committed
+    V find(K key, DbName db);
+
+    void delete(K key, DbName db);
+
+    // see KeyValueRepository#merge
+    void merge(K key, V operand, DbName db);
+
+    boolean commit();
+
+    // discards the batch if it has not been committed
+    @Override
+    void close();
+}
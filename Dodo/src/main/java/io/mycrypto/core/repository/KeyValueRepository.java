@@ -1,6 +1,8 @@
 package io.mycrypto.core.repository;
 
+import java.util.List;
 import java.util.Map;
+import java.util.function.BiPredicate;
 
 public interface KeyValueRepository<K, V> {
 
@@ -8,10 +10,48 @@ public interface KeyValueRepository<K, V> {
 
     V find(K key, DbName db);
 
+    /**
+     * Looks up several keys of a DB in a single call
+     *
+     * @return The values in the same order as the keys; null for the keys that are absent
+     */
+    List<V> multiFind(List<K> keys, DbName db);
+
+    /**
+     * Appends an operand to the value of the key without reading it first; Only supported by ACCOUNTS (see {@link AccountsMerge})
+     */
+    void merge(K key, V operand, DbName db);
+
     //to be used only when orphan blocks are detected (will only be applicable locally)
     boolean delete(K key, DbName db);
 
-    Map<String, String> getList(DbName db);
+    // copies the whole DB into memory; prefer scan() unless every entry is needed at once
+    Map<K, V> getList(DbName db);
+
+    /**
+     * Iterates over the entries of a DB in key order without copying them
+     *
+     * @param db       The DB to iterate over
+     * @param fromKey  The key to start at (or the first key after it if absent); null to start at the first key
+     * @param limit    Maximum number of entries visited; 0 for no limit
+     * @param consumer Called for every entry; The scan stops as soon as it returns false
+     * @return The number of entries visited
+     */
+    int scan(DbName db, K fromKey, int limit, BiPredicate<K, V> consumer);
 
+    /**
+     * Same as {@link #scan(DbName, Object, int, BiPredicate)} but only visits the entries whose key starts with the prefix
+     */
+    int scanPrefix(DbName db, K prefix, int limit, BiPredicate<K, V> consumer);
+
+    /**
+     * @return Number of entries of the DB; Exact for the DBs whose counts give block heights and limits, estimated for the others
+     * (ACCOUNTS, WALLETS and the DBs with a TTL)
+     */
     long getCount(DbName db);
+
+    KeyValueBatch<K, V> beginBatch();
+
+    // must be closed once the reads are done so that RocksDB can release the data it keeps for the snapshot
+    KeyValueSnapshot<K, V> openSnapshot();
 }
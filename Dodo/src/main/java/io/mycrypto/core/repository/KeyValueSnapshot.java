@@ -0,0 +1,20 @@
+package io.mycrypto.core.repository;
+
+import java.util.List;
+
+/**
+ * A consistent point-in-time view of all the DBs; Reads through the snapshot do not see writes committed after it was opened,
+ * so several related reads (e.g. an ACCOUNTS entry and the transactions it points to) cannot observe a half applied batch.
+ * Taking a snapshot does not block writers
+ */
+public interface KeyValueSnapshot<K, V> extends AutoCloseable {
+
+    V find(K key, DbName db);
+
+    // see KeyValueRepository#multiFind
+    List<V> multiFind(List<K> keys, DbName db);
+
+    // releases the snapshot
+    @Override
+    void close();
+}
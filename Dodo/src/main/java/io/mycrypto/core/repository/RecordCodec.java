@@ -0,0 +1,466 @@
+package io.mycrypto.core.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.mycrypto.core.entity.*;
+import io.mycrypto.core.util.Utility;
+import org.bitcoinj.core.Base58;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Binary encoding of the blocks and transactions that are persisted (block files, TRANSACTIONS and TRANSACTIONS_POOL values);
+ * JSON is only produced at the REST boundary. <br>
+ * A record starts with the version of its encoding. Integers are written as varints, hashes and addresses in their raw form
+ * (a string is tagged with how it is written, so any string round-trips exactly), and amounts as their scale followed by
+ * the bytes of their unscaled value, so amounts of any precision (e.g. outputs split by a ratio) are encoded.
+ * A script public key of the P2PKH template is written as its hash160 only. <br>
+ * The transactions of a block come after all its other fields, so the header of a block is decoded without reading past it.
+ * Records written as JSON by earlier versions start with '{' and are read as well
+ */
+public final class RecordCodec {
+    public static final byte VERSION = 1;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Pattern P2PKH = Pattern.compile("OP_DUP OP_HASH160 (\\S+) OP_EQUALVERIFY OP_CHECKSIG");
+
+    // tags of strings, kept in the 2 lowest bits of their length
+    private static final int NULL = 0;
+    private static final int TEXT = 1;
+    private static final int HEX = 2;
+    private static final int BASE58 = 3;
+
+    // forms of script public keys
+    private static final int SCRIPT_TEMPLATE = 1;
+    private static final int SCRIPT_EXPLICIT = 2;
+
+    private RecordCodec() {
+    }
+
+    public static boolean isJson(byte[] value) {
+        return value.length > 0 && value[0] == '{';
+    }
+
+    /**
+     * @throws IOException if a value does not fit its encoding (e.g. a size wider than 64 bits)
+     */
+    public static byte[] encode(Block block) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(VERSION);
+        try {
+            writeBlock(out, block);
+        } catch (ArithmeticException exception) {
+            throw new IOException(String.format("Block %s does not fit the binary encoding", block.getHash()), exception);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @throws IOException if a value does not fit its encoding (e.g. a size wider than 64 bits)
+     */
+    public static byte[] encode(Transaction transaction) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(VERSION);
+        try {
+            writeTransaction(out, transaction);
+        } catch (ArithmeticException exception) {
+            throw new IOException(String.format("Transaction %s does not fit the binary encoding", transaction.getTransactionId()), exception);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return The header of the block: every field but its transactions
+     * @throws IOException if a value does not fit its encoding
+     */
+    public static byte[] encodeHeader(Block block) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(VERSION);
+        try {
+            writeHeader(out, block);
+        } catch (ArithmeticException exception) {
+            throw new IOException(String.format("Header of block %s does not fit the binary encoding", block.getHash()), exception);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return The block without its transactions (null)
+     */
+    public static Block decodeHeader(byte[] value) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(value));
+        // laid out as the start of a block
+        readVersion(in);
+        return readBlock(in, false);
+    }
+
+    /**
+     * Decodes the block straight from the buffer (e.g. a mapping of a block file) without copying it; The position of the buffer is left as it is
+     *
+     * @param withTransactions false to decode only the header of the block (every field but its transactions)
+     */
+    public static Block decodeBlock(ByteBuffer value, boolean withTransactions) throws IOException {
+        InputStream stream = new ByteBufferInput(value.duplicate());
+        Block block;
+        if (value.hasRemaining() && value.get(value.position()) == '{') {
+            block = MAPPER.readValue(stream, Block.class);
+        } else {
+            DataInputStream in = new DataInputStream(stream);
+            readVersion(in);
+            block = readBlock(in, withTransactions);
+        }
+        if (!withTransactions)
+            block.setTransactions(null);
+        return block;
+    }
+
+    public static Transaction decodeTransaction(byte[] value) throws IOException {
+        if (isJson(value))
+            return MAPPER.readValue(value, Transaction.class);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(value));
+        readVersion(in);
+        return readTransaction(in);
+    }
+
+    private static void readVersion(DataInputStream in) throws IOException {
+        byte version = in.readByte();
+        if (version != VERSION)
+            throw new IOException(String.format("Records of version %d are not supported; This version reads version %d", version, VERSION));
+    }
+
+    private static void writeBlock(DataOutputStream out, Block block) throws IOException {
+        writeHeader(out, block);
+        writeSize(out, block.getTransactions());
+        if (block.getTransactions() != null)
+            for (Transaction transaction : block.getTransactions())
+                writeTransaction(out, transaction);
+    }
+
+    private static void writeHeader(DataOutputStream out, Block block) throws IOException {
+        writeString(out, block.getHash());
+        writeString(out, block.getPreviousHash());
+        writeString(out, block.getBlockOwner());
+        writeVarint(out, block.getHeight());
+        writeVarint(out, block.getTimeStamp());
+        writeVarint(out, block.getNumTx());
+        writeSize(out, block.getTransactionIds());
+        if (block.getTransactionIds() != null)
+            for (String id : block.getTransactionIds())
+                writeString(out, id);
+        writeString(out, block.getMerkleRoot());
+        writeVarint(out, block.getNonce());
+        writeVarint(out, block.getDifficulty());
+        writeBigInteger(out, block.getSize());
+        writeBigInteger(out, block.getWeight());
+    }
+
+    private static Block readBlock(DataInputStream in, boolean withTransactions) throws IOException {
+        Block block = new Block();
+        block.setHash(readString(in));
+        block.setPreviousHash(readString(in));
+        block.setBlockOwner(readString(in));
+        block.setHeight(readVarint(in));
+        block.setTimeStamp(readVarint(in));
+        block.setNumTx(readVarint(in));
+        int ids = readSize(in);
+        if (ids >= 0) {
+            List<String> transactionIds = new ArrayList<>(ids);
+            for (int i = 0; i < ids; i++)
+                transactionIds.add(readString(in));
+            block.setTransactionIds(transactionIds);
+        }
+        block.setMerkleRoot(readString(in));
+        block.setNonce(readVarint(in));
+        block.setDifficulty((int) readVarint(in));
+        block.setSize(readBigInteger(in));
+        block.setWeight(readBigInteger(in));
+        if (withTransactions)
+            block.setTransactions(readTransactions(in));
+        return block;
+    }
+
+    private static List<Transaction> readTransactions(DataInputStream in) throws IOException {
+        int count = readSize(in);
+        if (count < 0)
+            return null;
+        List<Transaction> transactions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            transactions.add(readTransaction(in));
+        return transactions;
+    }
+
+    private static void writeTransaction(DataOutputStream out, Transaction transaction) throws IOException {
+        writeString(out, transaction.getTransactionId());
+        writeVarint(out, transaction.getTimeStamp());
+        writeBigInteger(out, transaction.getSize());
+        writeBigInteger(out, transaction.getWeight());
+        writeString(out, transaction.getFrom());
+        writeString(out, transaction.getTo());
+        writeVarint(out, transaction.getNumInputs());
+        writeSize(out, transaction.getInputs());
+        if (transaction.getInputs() != null) {
+            for (Input input : transaction.getInputs()) {
+                writeString(out, input.getTransactionId());
+                writeLong(out, input.getVout());
+                writeLong(out, input.getSize());
+                writeString(out, input.getScriptSig());
+            }
+        }
+        writeVarint(out, transaction.getNumOutputs());
+        writeSize(out, transaction.getOutputs());
+        if (transaction.getOutputs() != null) {
+            for (Output output : transaction.getOutputs()) {
+                writeAmount(out, output.getAmount());
+                writeLong(out, output.getN());
+                writeScript(out, output.getScriptPubKey());
+            }
+        }
+        writeAmount(out, transaction.getSpent());
+        writeString(out, transaction.getMsg());
+        writeAmount(out, transaction.getTransactionFee());
+    }
+
+    private static Transaction readTransaction(DataInputStream in) throws IOException {
+        Transaction transaction = new Transaction();
+        transaction.setTransactionId(readString(in));
+        transaction.setTimeStamp(readVarint(in));
+        transaction.setSize(readBigInteger(in));
+        transaction.setWeight(readBigInteger(in));
+        transaction.setFrom(readString(in));
+        transaction.setTo(readString(in));
+        transaction.setNumInputs(readVarint(in));
+        int inputs = readSize(in);
+        if (inputs >= 0) {
+            List<Input> list = new ArrayList<>(inputs);
+            for (int i = 0; i < inputs; i++) {
+                Input input = new Input();
+                input.setTransactionId(readString(in));
+                input.setVout(readLong(in));
+                input.setSize(readLong(in));
+                input.setScriptSig(readString(in));
+                list.add(input);
+            }
+            transaction.setInputs(list);
+        }
+        transaction.setNumOutputs(readVarint(in));
+        int outputs = readSize(in);
+        if (outputs >= 0) {
+            List<Output> list = new ArrayList<>(outputs);
+            for (int i = 0; i < outputs; i++) {
+                Output output = new Output();
+                output.setAmount(readAmount(in));
+                output.setN(readLong(in));
+                output.setScriptPubKey(readScript(in));
+                list.add(output);
+            }
+            transaction.setOutputs(list);
+        }
+        transaction.setSpent(readAmount(in));
+        transaction.setMsg(readString(in));
+        transaction.setTransactionFee(readAmount(in));
+        return transaction;
+    }
+
+    private static void writeScript(DataOutputStream out, ScriptPublicKey script) throws IOException {
+        if (script == null) {
+            out.writeByte(NULL);
+            return;
+        }
+        Matcher matcher = script.getAssembly() == null ? null : P2PKH.matcher(script.getAssembly());
+        if (matcher != null && matcher.matches() && Utility.bytesToHex(script.getAssembly().getBytes()).equals(script.getHex())) {
+            out.writeByte(SCRIPT_TEMPLATE);
+            writeString(out, matcher.group(1));
+        } else {
+            out.writeByte(SCRIPT_EXPLICIT);
+            writeString(out, script.getAssembly());
+            writeString(out, script.getHex());
+        }
+        writeString(out, script.getAddress());
+        writeString(out, script.getType());
+    }
+
+    private static ScriptPublicKey readScript(DataInputStream in) throws IOException {
+        int form = in.readByte();
+        if (form == NULL)
+            return null;
+        ScriptPublicKey script;
+        if (form == SCRIPT_TEMPLATE) {
+            script = new ScriptPublicKey(readString(in), readString(in));
+        } else {
+            script = new ScriptPublicKey();
+            script.setAssembly(readString(in));
+            script.setHex(readString(in));
+            script.setAddress(readString(in));
+        }
+        script.setType(readString(in));
+        return script;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            writeVarint(out, NULL);
+            return;
+        }
+        int tag = TEXT;
+        byte[] bytes = null;
+        if (isHex(value)) {
+            tag = HEX;
+            bytes = HexFormat.of().parseHex(value);
+        } else if (!value.isEmpty()) {
+            bytes = base58(value);
+            if (bytes != null)
+                tag = BASE58;
+        }
+        if (bytes == null)
+            bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, ((long) bytes.length << 2) | tag);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        long header = readVarint(in);
+        int tag = (int) (header & 3);
+        if (tag == NULL)
+            return null;
+        byte[] bytes = new byte[Math.toIntExact(header >>> 2)];
+        in.readFully(bytes);
+        return switch (tag) {
+            case HEX -> HexFormat.of().formatHex(bytes);
+            case BASE58 -> Base58.encode(bytes);
+            default -> new String(bytes, StandardCharsets.UTF_8);
+        };
+    }
+
+    // lowercase only, as upper case digits would not survive the round trip
+    private static boolean isHex(String value) {
+        if (value.isEmpty() || value.length() % 2 != 0)
+            return false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f'))
+                return false;
+        }
+        return true;
+    }
+
+    private static byte[] base58(String value) {
+        try {
+            byte[] bytes = Base58.decode(value);
+            return Base58.encode(bytes).equals(value) ? bytes : null;
+        } catch (IllegalArgumentException exception) {
+            return null;
+        }
+    }
+
+    private static void writeAmount(DataOutputStream out, BigDecimal amount) throws IOException {
+        if (amount == null) {
+            writeVarint(out, 0);
+            return;
+        }
+        // zigzag, as the scale may be negative (e.g. 1E+3)
+        int scale = (amount.scale() << 1) ^ (amount.scale() >> 31);
+        writeVarint(out, Integer.toUnsignedLong(scale) + 1);
+        // two's complement, big-endian, in as few bytes as it takes
+        byte[] unscaled = amount.unscaledValue().toByteArray();
+        writeVarint(out, unscaled.length);
+        out.write(unscaled);
+    }
+
+    private static BigDecimal readAmount(DataInputStream in) throws IOException {
+        long header = readVarint(in);
+        if (header == 0)
+            return null;
+        int scale = (int) (header - 1);
+        scale = (scale >>> 1) ^ -(scale & 1);
+        byte[] unscaled = new byte[Math.toIntExact(readVarint(in))];
+        in.readFully(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    private static void writeBigInteger(DataOutputStream out, BigInteger value) throws IOException {
+        writeLong(out, value == null ? null : value.longValueExact());
+    }
+
+    private static BigInteger readBigInteger(DataInputStream in) throws IOException {
+        Long value = readLong(in);
+        return value == null ? null : BigInteger.valueOf(value);
+    }
+
+    private static void writeLong(DataOutputStream out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null)
+            writeVarint(out, value);
+    }
+
+    private static Long readLong(DataInputStream in) throws IOException {
+        return in.readBoolean() ? readVarint(in) : null;
+    }
+
+    // -1 for a null list
+    private static void writeSize(DataOutputStream out, List<?> list) throws IOException {
+        writeVarint(out, list == null ? 0 : list.size() + 1L);
+    }
+
+    private static int readSize(DataInputStream in) throws IOException {
+        return Math.toIntExact(readVarint(in) - 1);
+    }
+
+    /**
+     * LEB128: 7 bits per byte, lowest first, with the highest bit set on every byte but the last
+     */
+    private static void writeVarint(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarint(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static final class ByteBufferInput extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInput(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining())
+                return length == 0 ? 0 : -1;
+            length = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, length);
+            return length;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
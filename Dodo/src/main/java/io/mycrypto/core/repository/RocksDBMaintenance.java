@@ -0,0 +1,128 @@
+package io.mycrypto.core.repository;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.mycrypto.core.config.DodoCommonConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.TableProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of the tombstones (deleted keys) of every DB and compacts a DB once they make up more than MAINTENANCE_TOMBSTONE_RATIO of its entries;
+ * Mining deletes every mined transaction from TRANSACTIONS_POOL individually, and until a compaction reaches them those tombstones
+ * are read past by every scan of the pool. Also reports the on-disk size of every DB
+ */
+@Slf4j
+@Component
+@Profile("!" + InMemoryKeyValueRepository.PROFILE)
+public class RocksDBMaintenance implements MeterBinder {
+
+    @Autowired
+    private RocksDBRepositoryImpl repository;
+    @Autowired
+    private DodoCommonConfig config;
+
+    private final Map<DbName, AtomicLong> compactions = new EnumMap<>(DbName.class);
+
+    public RocksDBMaintenance() {
+        for (DbName db : RocksDBRepositoryImpl.COLUMN_FAMILIES)
+            compactions.put(db, new AtomicLong());
+    }
+
+    /**
+     * @param entries   Entries of the SST files and memtables, tombstones included
+     * @param deletions Tombstones among them
+     */
+    public record Tombstones(long entries, long deletions) {
+        public double ratio() {
+            return entries == 0 ? 0.0 : (double) deletions / entries;
+        }
+    }
+
+    Tombstones tombstones(DbName db) {
+        long entries = repository.property(db, "rocksdb.num-entries-active-mem-table") + repository.property(db, "rocksdb.num-entries-imm-mem-tables");
+        long deletions = repository.property(db, "rocksdb.num-deletes-active-mem-table") + repository.property(db, "rocksdb.num-deletes-imm-mem-tables");
+        try {
+            for (TableProperties properties : repository.tableProperties(db)) {
+                entries += properties.getNumEntries();
+                deletions += properties.getNumDeletions() + properties.getNumRangeDeletions();
+            }
+        } catch (RocksDBException | IllegalArgumentException e) {
+            log.error("Error reading the table properties of {}, cause: {}, message: {}", db, e.getCause(), e.getMessage());
+        }
+        // properties are -1 once the DB is closed
+        return new Tombstones(Math.max(entries, 0), Math.max(deletions, 0));
+    }
+
+    @Scheduled(initialDelayString = "${MAINTENANCE_INTERVAL_MS:300000}", fixedDelayString = "${MAINTENANCE_INTERVAL_MS:300000}")
+    void compactTombstones() {
+        // the primary node compacts
+        if (config.getQueryOnly())
+            return;
+        for (DbName db : RocksDBRepositoryImpl.COLUMN_FAMILIES) {
+            // FIFO compaction of DBs with a TTL drops whole files and does not purge tombstones
+            if (repository.ttlSeconds(db) != null)
+                continue;
+            Tombstones tombstones = tombstones(db);
+            if (tombstones.deletions() < config.getMaintenanceMinTombstones() || tombstones.ratio() < config.getMaintenanceTombstoneRatio())
+                continue;
+
+            long start = System.nanoTime();
+            try {
+                repository.compact(db);
+            } catch (RocksDBException e) {
+                log.error("Error compacting {}, cause: {}, message: {}", db, e.getCause(), e.getMessage());
+                continue;
+            }
+            compactions.get(db).incrementAndGet();
+            log.info("Compacted {} holding {} tombstones among {} entries in {} ms", db, tombstones.deletions(), tombstones.entries(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * @return For every DB the size of its SST files, the estimated size of its live data and of its memtables (in bytes), its entries and tombstones
+     */
+    public Map<DbName, Map<String, Number>> storageReport() {
+        Map<DbName, Map<String, Number>> report = new EnumMap<>(DbName.class);
+        for (DbName db : RocksDBRepositoryImpl.COLUMN_FAMILIES) {
+            Tombstones tombstones = tombstones(db);
+            Map<String, Number> sizes = new LinkedHashMap<>();
+            sizes.put("sst-files-bytes", repository.property(db, "rocksdb.total-sst-files-size"));
+            sizes.put("live-data-bytes", repository.property(db, "rocksdb.estimate-live-data-size"));
+            sizes.put("memtable-bytes", repository.property(db, "rocksdb.cur-size-all-mem-tables"));
+            sizes.put("entries", repository.getCount(db));
+            sizes.put("tombstones", tombstones.deletions());
+            sizes.put("tombstone-ratio", tombstones.ratio());
+            sizes.put("compactions", compactions.get(db).get());
+            report.put(db, sizes);
+        }
+        return report;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (DbName db : RocksDBRepositoryImpl.COLUMN_FAMILIES) {
+            Gauge.builder("rocksdb.tombstone.ratio", this, m -> m.tombstones(db).ratio())
+                    .description("Share of the entries of the SST files and memtables that are tombstones")
+                    .tag("db", db.name())
+                    .register(registry);
+            FunctionCounter.builder("rocksdb.maintenance.compactions", compactions.get(db), AtomicLong::get)
+                    .description("Compactions run to purge tombstones")
+                    .tag("db", db.name())
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package io.mycrypto.core.repository;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.rocksdb.HistogramData;
+import org.rocksdb.HistogramType;
+import org.rocksdb.TickerType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Publishes the RocksDB statistics and properties as Micrometer meters (see /actuator/metrics/rocksdb.*);
+ * Properties are tagged with the DbName of their column family. RocksDB keeps tickers and latency histograms for the DB as a whole,
+ * and the block cache is shared by all column families, so those are not tagged with a DbName
+ */
+@Component
+@Profile("!" + InMemoryKeyValueRepository.PROFILE)
+public class RocksDBMetrics implements MeterBinder {
+
+    // Micrometer name ==> RocksDB property
+    private static final Map<String, String> BYTE_PROPERTIES = Map.of(
+            "rocksdb.memtable.size", "rocksdb.cur-size-all-mem-tables",
+            "rocksdb.pending.compaction", "rocksdb.estimate-pending-compaction-bytes",
+            "rocksdb.live.sst.size", "rocksdb.live-sst-files-size"
+    );
+    private static final Map<String, HistogramType> LATENCIES = Map.of(
+            "get", HistogramType.DB_GET,
+            "multiget", HistogramType.DB_MULTIGET,
+            "write", HistogramType.DB_WRITE,
+            "seek", HistogramType.DB_SEEK
+    );
+    private static final Map<String, ToDoubleFunction<HistogramData>> STATISTICS = Map.of(
+            "average", HistogramData::getAverage,
+            "p50", HistogramData::getMedian,
+            "p95", HistogramData::getPercentile95,
+            "p99", HistogramData::getPercentile99,
+            "max", HistogramData::getMax
+    );
+
+    @Autowired
+    private RocksDBRepositoryImpl repository;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (DbName db : RocksDBRepositoryImpl.COLUMN_FAMILIES) {
+            Gauge.builder("rocksdb.estimate.num.keys", repository, r -> r.property(db, "rocksdb.estimate-num-keys"))
+                    .description("Estimated number of keys")
+                    .tag("db", db.name())
+                    .register(registry);
+            BYTE_PROPERTIES.forEach((name, property) -> Gauge.builder(name, repository, r -> r.property(db, property))
+                    .tag("db", db.name())
+                    .baseUnit("bytes")
+                    .register(registry));
+        }
+
+        FunctionCounter.builder("rocksdb.block.cache.hit", repository, r -> r.tickerCount(TickerType.BLOCK_CACHE_HIT))
+                .register(registry);
+        FunctionCounter.builder("rocksdb.block.cache.miss", repository, r -> r.tickerCount(TickerType.BLOCK_CACHE_MISS))
+                .register(registry);
+        Gauge.builder("rocksdb.block.cache.hit.ratio", repository, RocksDBMetrics::blockCacheHitRatio)
+                .register(registry);
+
+        LATENCIES.forEach((operation, histogram) -> STATISTICS.forEach((statistic, value) ->
+                Gauge.builder("rocksdb.latency", repository, r -> {
+                            HistogramData data = r.histogram(histogram);
+                            return data == null ? Double.NaN : value.applyAsDouble(data);
+                        })
+                        .tag("operation", operation)
+                        .tag("statistic", statistic)
+                        .baseUnit("microseconds")
+                        .register(registry)));
+    }
+
+    private static double blockCacheHitRatio(RocksDBRepositoryImpl repository) {
+        long hits = repository.tickerCount(TickerType.BLOCK_CACHE_HIT);
+        long total = hits + repository.tickerCount(TickerType.BLOCK_CACHE_MISS);
+        return total == 0 ? Double.NaN : (double) hits / total;
+    }
+}
@@ -1,22 +1,34 @@
 package io.mycrypto.core.repository;
 
+import com.google.common.util.concurrent.Striped;
+import io.mycrypto.core.config.DodoCommonConfig;
 import io.mycrypto.core.util.Utility;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.SystemUtils;
-import org.rocksdb.Options;
-import org.rocksdb.RocksDB;
-import org.rocksdb.RocksDBException;
-import org.rocksdb.RocksIterator;
+import org.rocksdb.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Repository;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
 
 import static io.mycrypto.core.repository.DbName.*;
 
@@ -26,7 +38,8 @@ import static io.mycrypto.core.repository.DbName.*;
 
 @Slf4j
 @Repository
-public class RocksDBRepositoryImpl implements KeyValueRepository<String, String> {
+@Profile("!" + InMemoryKeyValueRepository.PROFILE)
+public class RocksDBRepositoryImpl implements KeyValueRepository<byte[], byte[]> {
     private final static String LOCATION_TO_STORE_DB;
     private final static String PROJECT_FOLDER_PATH;
     private static final String OUTER_RESOURCE_FOLDER = "RESOURCES";
@@ -45,16 +58,64 @@ public class RocksDBRepositoryImpl implements KeyValueRepository<String, String>
     }
     // --------------------------------------------------------------
 
-    RocksDB dbBlockchain, dbTransactions, dbTransactionsPool, dbNodes, dbWallets, dbAccounts, dbWebrtc, dbP2P;
-    // DB will be stored under: /LOCATION_TO_STORE_DB/DB_NAME
+    private static final String FOLDER_TO_STORE_CHAIN_STATE = "DODO"; // single DB holding one column family per DbName
+    private static final String FOLDER_TO_STORE_CHECKPOINTS = "checkpoints";
+    private static final String FOLDER_TO_STORE_SECONDARIES = "secondary"; // info logs of query-only nodes, one folder per process
+    private static final String FOLDER_TO_STORE_SHARD = "SHARD-"; // followed by the index of the shard
+    private static final String MIGRATED_SUFFIX = ".migrated";
+    private static final long MB = 1024L * 1024;
+    private static final int MIGRATION_BATCH_SIZE = 10_000;
+    private static final byte[] METADATA_COLUMN_FAMILY = "METADATA".getBytes(); // counts of entries of every DbName, maintained through a uint64add merge operator
+    private static final String COUNT_KEY_PREFIX = "count:";
+    private static final byte[] KEY_FORMAT_KEY = "key-format".getBytes(); // present once hashes and addresses are stored as raw bytes
+    private static final byte[] SHARDS_KEY = "shards".getBytes(); // number of shards, present once the DBs in SHARDABLE are sharded
+    private static final String SHARD_INTENT_KEY_PREFIX = "shard-intent:"; // writes to the shards of a batch that is not fully applied yet
+    private static final int MAIN = -1; // index of the main DB among the partitions
+    private static final int WRITE_LOCK_STRIPES = 1024;
 
-    @PostConstruct
-    void initialize() {
+    // DbNames that are backed by a column family; PEERS and ICE are keys within WEBRTC
+    static final List<DbName> COLUMN_FAMILIES = List.of(BLOCKCHAIN, BLOCK_HEADERS, TRANSACTIONS, TRANSACTIONS_POOL, NODES, WALLETS, ACCOUNTS, WEBRTC, P2P);
+    // DbNames holding transient signaling state that may be given a TTL through ROCKSDB_TTL_SECONDS
+    private static final Set<DbName> EXPIRABLE = Set.of(WEBRTC, P2P);
+    // DbNames whose entries may be partitioned across ROCKSDB_SHARDS RocksDB instances by the hash of their key; each shard holds one column family per DbName
+    static final List<DbName> SHARDABLE = List.of(ACCOUNTS);
+    // DbNames whose entries are counted exactly, which takes a lookup of every key written; their counts give block heights and limits.
+    // The counts of the others (ACCOUNTS, WALLETS and the DBs with a TTL) are estimated by RocksDB (rocksdb.estimate-num-keys)
+    static final Set<DbName> COUNTED = Set.of(BLOCKCHAIN, BLOCK_HEADERS, TRANSACTIONS, TRANSACTIONS_POOL, NODES);
 
-        RocksDB.loadLibrary();
-        final Options options = new Options();
-        options.setCreateIfMissing(true);
+    @Autowired
+    private DodoCommonConfig config;
+
+    RocksDB rocksDB;
+    // DB will be stored under: /LOCATION_TO_STORE_DB/DODO with one column family for each DbName
+
+    private final Map<DbName, ColumnFamilyHandle> columnFamilies = new EnumMap<>(DbName.class);
+    private final List<ColumnFamilyHandle> handles = new ArrayList<>();
+    private ColumnFamilyHandle metadata;
+    // RocksDB instances under /LOCATION_TO_STORE_DB/SHARD-N; empty unless the DBs in SHARDABLE are sharded
+    private final List<Shard> shards = new ArrayList<>();
+    // serializes writers of the same key between the existence check (or the fold of an ACCOUNTS entry) and the write so that the counts stay exact;
+    // kept separate from KeyLocks as callers may already hold those when writing
+    private final Striped<Lock> writeLocks = Striped.lock(WRITE_LOCK_STRIPES);
+    private DBOptions dbOptions;
+    private ColumnFamilyOptions columnFamilyOptions;
+    private ColumnFamilyOptions accountsOptions;
+    private StringAppendOperator accountsMergeOperator;
+    private ColumnFamilyOptions metadataOptions;
+    private Cache blockCache;
+    private WriteBufferManager writeBufferManager;
+    private Filter bloomFilter;
+    private Statistics statistics;
+    private final Map<DbName, Long> ttlSeconds = new EnumMap<>(DbName.class);
+    private final Map<DbName, ColumnFamilyOptions> ttlOptions = new EnumMap<>(DbName.class);
+    private volatile boolean closed;
+    private boolean restored;
+    private Path secondaryDir; // set on a query-only node
 
+    /**
+     * Creates the folder holding the DBs, block files and keys if it is not present
+     */
+    static void createResourceFolder() {
         File resources = new File(PROJECT_FOLDER_PATH + Utility.osAppender() + OUTER_RESOURCE_FOLDER);
         if (resources.isDirectory())
             log.info(String.format("Found directory \\%s\\ ...", OUTER_RESOURCE_FOLDER));
@@ -64,174 +125,1220 @@ public class RocksDBRepositoryImpl implements KeyValueRepository<String, String>
             else
                 log.info(String.format("Unable to create directory \\%s\\ ...", OUTER_RESOURCE_FOLDER));
         }
+    }
+
+    @PostConstruct
+    void initialize() {
+
+        RocksDB.loadLibrary();
+
+        createResourceFolder();
+
+        // block cache shared by all column families; the memtables of all column families are bounded by the write buffer manager and charged to the block cache
+        blockCache = new LRUCache(config.getBlockCacheSizeMB() * MB);
+        writeBufferManager = new WriteBufferManager(config.getWriteBufferManagerSizeMB() * MB, blockCache);
+        // tickers and latency histograms of the whole DB, published through RocksDBMetrics
+        statistics = new Statistics();
+        statistics.setStatsLevel(StatsLevel.valueOf(config.getStatisticsLevel().trim().toUpperCase()));
+        dbOptions = new DBOptions()
+                .setCreateIfMissing(true)
+                .setCreateMissingColumnFamilies(true)
+                .setWriteBufferManager(writeBufferManager)
+                .setStatistics(statistics);
+        columnFamilyOptions = new ColumnFamilyOptions()
+                .setTableFormatConfig(tableConfig())
+                .setWriteBufferSize(config.getWriteBufferSizeMB() * MB)
+                // sizes the levels from the bottom up so that most of the data ends up in the bottommost level
+                .setLevelCompactionDynamicLevelBytes(true)
+                .setCompressionType(compressionType(config.getCompression()))
+                .setBottommostCompressionType(compressionType(config.getBottommostCompression()));
+        accountsMergeOperator = new StringAppendOperator(AccountsMerge.DELIMITER);
+        accountsOptions = new ColumnFamilyOptions(columnFamilyOptions)
+                .setMergeOperator(accountsMergeOperator);
+        metadataOptions = new ColumnFamilyOptions()
+                .setMergeOperator(new UInt64AddOperator());
+        initializeTtls();
+
+        if (config.getQueryOnly()) {
+            openAsSecondary();
+            openShards();
+            return;
+        }
 
-        createDB(options, BLOCKCHAIN, "Blockchain");
-        createDB(options, TRANSACTIONS, "Transactions"); // transaction sent by you as well as that reachieved by you
-        createDB(options, TRANSACTIONS_POOL, "Transactions Pool"); // all transactions
-        createDB(options, NODES, "Node Information");
-        createDB(options, WALLETS, "Wallet Information");
-        createDB(options, ACCOUNTS, "Coins/UTXOs for Wallet");
-        createDB(options, WEBRTC, "Store responses from remote servers and peers");
-        createDB(options, P2P, "Store p2p peer ws connection status");
+        restoreCheckpoint();
+        createDB();
+        migrateLegacyDBs();
+        migrateKeyFormat();
+        openShards();
+        initializeCounts();
     }
 
-    private void createDB(Options options, DbName dbName, String msg) {
-        File base = new File(LOCATION_TO_STORE_DB);
-        if (!base.isDirectory()) {
-            if (base.mkdir())
-                log.info("Creating directory \\RocksDB\\ ...");
-            else
-                log.error("Unable to create dir \\RocksDB\\ ...");
+    /**
+     * Block based tables reading through the shared block cache; Index and filter blocks are kept in the cache as well
+     * so that the memory used by RocksDB stays within the configured cache size
+     */
+    private BlockBasedTableConfig tableConfig() {
+        BlockBasedTableConfig tableConfig = new BlockBasedTableConfig()
+                .setBlockCache(blockCache)
+                .setCacheIndexAndFilterBlocks(true)
+                .setPinL0FilterAndIndexBlocksInCache(true);
+        // point lookups (find) of absent keys are answered by the filter without reading data blocks
+        if (config.getBloomFilterBitsPerKey() > 0) {
+            bloomFilter = new BloomFilter(config.getBloomFilterBitsPerKey(), false);
+            tableConfig.setFilterPolicy(bloomFilter);
+        }
+        return tableConfig;
+    }
+
+    private static CompressionType compressionType(String name) {
+        return CompressionType.valueOf(name.trim().toUpperCase() + "_COMPRESSION");
+    }
+
+    /**
+     * Entries of the DBs given a TTL expire through FIFO compaction, which deletes SST files once they are older than the TTL;
+     * Nothing is read or rewritten by the application to purge them. <br>
+     * Format: {@code <DbName>:<seconds>,<DbName>:<seconds>,...}
+     */
+    private void initializeTtls() {
+        for (String entry : config.getTtlSeconds().split(",")) {
+            if (entry.isBlank())
+                continue;
+            String[] parts = entry.split(":");
+            try {
+                DbName dbName = DbName.valueOf(parts[0].trim().toUpperCase());
+                long seconds = Long.parseLong(parts[1].trim());
+                if (!EXPIRABLE.contains(dbName)) {
+                    log.error("{} cannot be given a TTL; only {} hold transient data", dbName, EXPIRABLE);
+                    continue;
+                }
+                if (seconds <= 0)
+                    continue;
+                ttlSeconds.put(dbName, seconds);
+                ttlOptions.put(dbName, new ColumnFamilyOptions(columnFamilyOptions)
+                        .setLevelCompactionDynamicLevelBytes(false)
+                        .setCompactionStyle(CompactionStyle.FIFO)
+                        .setTtl(seconds));
+            } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                log.error("Invalid TTL configuration {}; expected <DbName>:<seconds>", entry);
+            }
         }
+        log.info("TTLs (in seconds) of transient DBs: {}", ttlSeconds);
+    }
+
+    private ColumnFamilyOptions columnFamilyOptions(DbName dbName) {
+        if (dbName == ACCOUNTS)
+            return accountsOptions;
+        return ttlOptions.getOrDefault(dbName, columnFamilyOptions);
+    }
+
+    private void createDB() {
+        File dbDir = new File(LOCATION_TO_STORE_DB, FOLDER_TO_STORE_CHAIN_STATE);
+        Set<DbName> levelCompacted = levelCompactedExpirableColumnFamilies(dbDir);
 
-        File dbDir = new File(LOCATION_TO_STORE_DB, dbName.toString());
         try {
-            Files.createDirectories(dbDir.getParentFile().toPath());
             Files.createDirectories(dbDir.getAbsoluteFile().toPath());
-            RocksDB db = RocksDB.open(options, dbDir.getAbsolutePath());
-            switch (dbName) {
-                case BLOCKCHAIN -> dbBlockchain = db;
-                case TRANSACTIONS -> dbTransactions = db;
-                case TRANSACTIONS_POOL -> dbTransactionsPool = db;
-                case NODES -> dbNodes = db;
-                case WALLETS -> dbWallets = db;
-                case ACCOUNTS -> dbAccounts = db;
-                case WEBRTC -> dbWebrtc = db;
-                case P2P -> dbP2P = db;
-            }
+            rocksDB = RocksDB.open(dbOptions, dbDir.getAbsolutePath(), descriptors(levelCompacted), handles);
+            mapHandles();
+            for (DbName dbName : levelCompacted)
+                recreateWithTtl(dbName);
         } catch (IOException | RocksDBException ex) {
-            log.error("Error initializing RocksDB for storing {}, check configurations and permissions, exception: {}, message: {}, stackTrace: {}",
-                    msg, ex.getCause(), ex.getMessage(), ex.getStackTrace());
+            log.error("Error initializing RocksDB, check configurations and permissions, exception: {}, message: {}, stackTrace: {}",
+                    ex.getCause(), ex.getMessage(), ex.getStackTrace());
+            return;
         }
-        log.info("RocksDB for storing {} initialized and ready to use", msg);
+        log.info("RocksDB initialized with column families {} and ready to use", COLUMN_FAMILIES);
     }
 
-    @Override
-    public synchronized void save(String key, String value, DbName db) {
-        log.info("----SAVE----      KEY: {}     VALUE: {}     DB: {}", key, value.length() > 25 ? value.substring(0, 25) + " ......." : value, db);
-        try {
-            switch (db) {
-                case BLOCKCHAIN -> dbBlockchain.put(key.getBytes(), value.getBytes());
-                case TRANSACTIONS -> dbTransactions.put(key.getBytes(), value.getBytes());
-                case TRANSACTIONS_POOL -> dbTransactionsPool.put(key.getBytes(), value.getBytes());
-                case NODES -> dbNodes.put(key.getBytes(), value.getBytes());
-                case WALLETS -> dbWallets.put(key.getBytes(), value.getBytes());
-                case ACCOUNTS -> dbAccounts.put(key.getBytes(), value.getBytes());
-                case WEBRTC -> dbWebrtc.put(key.getBytes(), value.getBytes());
-                case P2P -> dbP2P.put(key.getBytes(), value.getBytes());
-                default -> log.error("Please enter valid DB name");
+    /**
+     * Query-only mode: opens the DB of the node running from the same folder as a RocksDB secondary instance, which reads the files of
+     * that (primary) node without taking its lock and follows its writes through {@link #catchUpWithPrimary()}. Nothing is written to the DB;
+     * The secondary keeps its info log under /LOCATION_TO_STORE_DB/secondary/PID, which is removed on shutdown
+     */
+    private void openAsSecondary() {
+        File dbDir = new File(LOCATION_TO_STORE_DB, FOLDER_TO_STORE_CHAIN_STATE);
+        if (!new File(dbDir, "CURRENT").isFile()) {
+            log.error("No DB found at {}; The primary node must be started before a query-only node", dbDir.getAbsolutePath());
+            return;
+        }
+
+        secondaryDir = Path.of(LOCATION_TO_STORE_DB, FOLDER_TO_STORE_SECONDARIES, String.valueOf(ProcessHandle.current().pid()));
+        try {
+            Files.createDirectories(secondaryDir);
+            // a secondary instance must keep all the files of the primary open
+            dbOptions.setMaxOpenFiles(-1);
+            rocksDB = RocksDB.openAsSecondary(dbOptions, dbDir.getAbsolutePath(), secondaryDir.toString(), descriptors(Set.of()), handles);
+            mapHandles();
+        } catch (IOException | RocksDBException ex) {
+            log.error("Error opening RocksDB as a secondary instance, exception: {}, message: {}", ex.getCause(), ex.getMessage());
+            return;
+        }
+        log.info("RocksDB opened in query-only mode as a secondary instance of {}", dbDir.getAbsolutePath());
+    }
+
+    /**
+     * Replays the writes made by the primary node since the last catch up; Only runs on a query-only node
+     */
+    @Scheduled(fixedDelayString = "${ROCKSDB_SECONDARY_CATCH_UP_INTERVAL_MS:1000}")
+    void catchUpWithPrimary() {
+        if (secondaryDir == null || closed || rocksDB == null)
+            return;
+        try {
+            rocksDB.tryCatchUpWithPrimary();
+            for (Shard shard : shards)
+                shard.rocksDB().tryCatchUpWithPrimary();
+        } catch (RocksDBException e) {
+            log.error("Error catching up with the primary instance, cause: {}, message: {}", e.getCause(), e.getMessage());
+        }
+    }
+
+    // default column family, one column family per DbName and the metadata, in that order
+    private List<ColumnFamilyDescriptor> descriptors(Set<DbName> levelCompacted) {
+        List<ColumnFamilyDescriptor> descriptors = new ArrayList<>();
+        descriptors.add(new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY, columnFamilyOptions));
+        for (DbName dbName : COLUMN_FAMILIES)
+            descriptors.add(new ColumnFamilyDescriptor(dbName.toString().getBytes(), levelCompacted.contains(dbName) ? columnFamilyOptions : columnFamilyOptions(dbName)));
+        descriptors.add(new ColumnFamilyDescriptor(METADATA_COLUMN_FAMILY, metadataOptions));
+        return descriptors;
+    }
+
+    // handles are returned in the same order as the descriptors; index 0 is the default column family
+    private void mapHandles() {
+        for (int i = 0; i < COLUMN_FAMILIES.size(); i++)
+            columnFamilies.put(COLUMN_FAMILIES.get(i), handles.get(i + 1));
+        metadata = handles.get(COLUMN_FAMILIES.size() + 1);
+    }
+
+    /**
+     * Sharding: the DBs in SHARDABLE are partitioned across ROCKSDB_SHARDS RocksDB instances by the hash of their key, each with its own WAL,
+     * memtables and compactions, so that their writes no longer queue up behind those of every other DB on a single WAL. <br>
+     * The number of shards is recorded once they are created and cannot be changed afterwards, as most keys would have to move to another shard.
+     * Entries written before the DBs were sharded are moved into the shards, and batches interrupted before they reached every shard are completed
+     * (see {@link #write(WriteOptions, Map, Map)})
+     */
+    private void openShards() {
+        if (rocksDB == null)
+            return;
+        try {
+            byte[] recorded = rocksDB.get(metadata, SHARDS_KEY);
+            int count;
+            if (recorded == null)
+                count = secondaryDir == null ? Math.max(config.getShards(), 1) : 1;
+            else {
+                count = Integer.parseInt(ByteCodec.UTF8.decode(recorded));
+                // a query-only node follows the primary
+                if (secondaryDir == null && count != config.getShards())
+                    log.warn("{} are partitioned across {} shards; ROCKSDB_SHARDS={} is ignored as resharding is not supported", SHARDABLE, count, config.getShards());
+            }
+            if (count <= 1)
+                return;
+
+            for (int i = 0; i < count; i++)
+                shards.add(openShard(i));
+            if (secondaryDir == null) {
+                if (recorded == null)
+                    rocksDB.put(metadata, SHARDS_KEY, ByteCodec.UTF8.encode(String.valueOf(count)));
+                replayShardIntents();
+                moveToShards();
             }
+        } catch (IOException | RocksDBException e) {
+            log.error("Error opening the shards of {}, cause: {}, message: {}", SHARDABLE, e.getCause(), e.getMessage());
+            // serving the DBs from the main DB would hide every entry held by the shards
+            throw new IllegalStateException("Unable to open the shards of " + SHARDABLE, e);
+        }
+        log.info("{} partitioned across {} shards", SHARDABLE, shards.size());
+    }
+
+    // default column family, one column family per DbName in SHARDABLE and the metadata, in that order; a query-only node opens it as a secondary instance
+    private Shard openShard(int index) throws IOException, RocksDBException {
+        File shardDir = new File(LOCATION_TO_STORE_DB, FOLDER_TO_STORE_SHARD + index);
+        List<ColumnFamilyDescriptor> descriptors = new ArrayList<>();
+        descriptors.add(new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY, columnFamilyOptions));
+        for (DbName dbName : SHARDABLE)
+            descriptors.add(new ColumnFamilyDescriptor(dbName.toString().getBytes(), columnFamilyOptions(dbName)));
+        descriptors.add(new ColumnFamilyDescriptor(METADATA_COLUMN_FAMILY, metadataOptions));
+
+        List<ColumnFamilyHandle> shardHandles = new ArrayList<>();
+        if (secondaryDir != null) {
+            Path shardSecondaryDir = secondaryDir.resolve(shardDir.getName());
+            Files.createDirectories(shardSecondaryDir);
+            return new Shard(RocksDB.openAsSecondary(dbOptions, shardDir.getAbsolutePath(), shardSecondaryDir.toString(), descriptors, shardHandles), shardHandles);
+        }
+        Files.createDirectories(shardDir.getAbsoluteFile().toPath());
+        return new Shard(RocksDB.open(dbOptions, shardDir.getAbsolutePath(), descriptors, shardHandles), shardHandles);
+    }
+
+    /**
+     * Completes the batches whose writes to the main DB were applied but whose writes to the shards may not all have been;
+     * Replaying the writes to a shard that already has them leaves its entries as they are (puts and deletes are repeated, ACCOUNTS operands
+     * add or remove an outpoint at most once), but not its count, so the counts of the sharded DBs are recounted
+     */
+    private void replayShardIntents() throws RocksDBException {
+        byte[] prefix = SHARD_INTENT_KEY_PREFIX.getBytes();
+        Map<byte[], byte[]> intents = new LinkedHashMap<>();
+        try (RocksIterator itr = rocksDB.newIterator(metadata)) {
+            for (itr.seek(prefix); itr.isValid() && startsWith(itr.key(), prefix); itr.next())
+                intents.put(itr.key(), itr.value());
+        }
+        if (intents.isEmpty())
+            return;
+
+        try (WriteOptions writeOptions = new WriteOptions().setSync(true)) {
+            for (Map.Entry<byte[], byte[]> intent : intents.entrySet()) {
+                ByteBuffer buffer = ByteBuffer.wrap(intent.getValue());
+                while (buffer.hasRemaining()) {
+                    Shard shard = shards.get(buffer.getInt());
+                    byte[] data = new byte[buffer.getInt()];
+                    buffer.get(data);
+                    try (WriteBatch batch = new WriteBatch(data)) {
+                        shard.rocksDB().write(writeOptions, batch);
+                    }
+                }
+                rocksDB.delete(metadata, writeOptions, intent.getKey());
+            }
+        }
+        for (DbName dbName : SHARDABLE)
+            clearCounts(dbName);
+        log.warn("Completed {} batches that were interrupted before they reached every shard", intents.size());
+    }
+
+    /**
+     * Moves the entries the DBs in SHARDABLE held before they were sharded into their shards; Entries are written to their shard before they are
+     * deleted from the main DB, so a move interrupted by a restart is resumed on the next start
+     */
+    private void moveToShards() throws RocksDBException {
+        for (DbName dbName : SHARDABLE) {
+            long moved = 0;
+            try (RocksIterator itr = rocksDB.newIterator(columnFamily(dbName));
+                 WriteOptions writeOptions = new WriteOptions().setSync(true)) {
+                itr.seekToFirst();
+                while (itr.isValid()) {
+                    Map<Integer, WriteBatch> batches = new TreeMap<>();
+                    try (WriteBatch removed = new WriteBatch()) {
+                        for (int i = 0; i < MIGRATION_BATCH_SIZE && itr.isValid(); i++, itr.next()) {
+                            Partition partition = partition(dbName, itr.key());
+                            // merge operands are moved along with the value and resolved when it is read, as they were before
+                            batches.computeIfAbsent(partition.shard(), k -> new WriteBatch()).put(partition.handle(), itr.key(), itr.value());
+                            removed.delete(columnFamily(dbName), itr.key());
+                            moved++;
+                        }
+                        for (Map.Entry<Integer, WriteBatch> batch : batches.entrySet())
+                            shards.get(batch.getKey()).rocksDB().write(writeOptions, batch.getValue());
+                        rocksDB.write(writeOptions, removed);
+                    } finally {
+                        batches.values().forEach(WriteBatch::close);
+                    }
+                }
+            }
+            if (moved > 0) {
+                clearCounts(dbName);
+                log.info("Moved {} entries of {} into its {} shards", moved, dbName, shards.size());
+            }
+        }
+    }
+
+    // the entries are counted again by initializeCounts()
+    private void clearCounts(DbName dbName) throws RocksDBException {
+        rocksDB.delete(metadata, countKey(dbName));
+        for (Partition partition : partitions(dbName))
+            partition.rocksDB().delete(partition.metadata(), countKey(dbName));
+    }
+
+    /**
+     * Startup mode in which a new node is brought up from a checkpoint (see {@link #createCheckpoint(String)}) instead of from genesis;
+     * The DB of the checkpoint is copied into place before it is opened. An existing DB is never overwritten
+     */
+    private void restoreCheckpoint() {
+        if (config.getRestoreFromCheckpoint().isBlank())
+            return;
+        Path source = Path.of(config.getRestoreFromCheckpoint(), FOLDER_TO_STORE_DB, FOLDER_TO_STORE_CHAIN_STATE);
+        Path target = Path.of(LOCATION_TO_STORE_DB, FOLDER_TO_STORE_CHAIN_STATE);
+        if (!Files.isRegularFile(source.resolve("CURRENT"))) {
+            log.error("{} does not hold a checkpoint of the DB; Starting without restoring", source);
+            return;
+        }
+        if (Files.isRegularFile(target.resolve("CURRENT"))) {
+            log.error("A DB already exists at {}; Remove it to restore from {}", target, source);
+            return;
+        }
+
+        try {
+            restoreFolder(source, target);
+            // shards of the DBs in SHARDABLE, if they were sharded
+            try (DirectoryStream<Path> shardDirs = Files.newDirectoryStream(source.getParent(), FOLDER_TO_STORE_SHARD + "*")) {
+                for (Path shardDir : shardDirs)
+                    restoreFolder(shardDir, target.resolveSibling(shardDir.getFileName()));
+            }
+        } catch (IOException e) {
+            log.error("Error restoring the DB from {}, cause: {}, message: {}", source, e.getCause(), e.getMessage());
+            return;
+        }
+        restored = true;
+        log.info("Restored the DB from checkpoint {}", source);
+    }
+
+    private static void restoreFolder(Path source, Path target) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(source)) {
+            Files.createDirectories(target);
+            for (Path file : files) {
+                // SST files are never modified by RocksDB and can be shared with the checkpoint; MANIFEST, WAL etc. are appended to and are copied
+                if (file.getFileName().toString().endsWith(".sst"))
+                    Utility.linkOrCopy(file, target.resolve(file.getFileName()));
+                else
+                    Files.copy(file, target.resolve(file.getFileName()));
+            }
+        }
+    }
+
+    /**
+     * @return true if the DB was restored from a checkpoint on this start
+     */
+    public boolean isRestored() {
+        return restored;
+    }
+
+    /**
+     * Takes a RocksDB checkpoint of all the DBs under /RESOURCES/checkpoints/NAME; The SST files are hard linked, so a checkpoint is cheap
+     * and consistent across all column families. Writes are held back while the shards (if any) are checkpointed along with the main DB,
+     * so that no batch is in the checkpoint of one instance but not of another
+     *
+     * @return The folder of the checkpoint, which callers may add other files (e.g. block files) to
+     */
+    public Path createCheckpoint(String name) throws RocksDBException, IOException {
+        Path root = Path.of(PROJECT_FOLDER_PATH, OUTER_RESOURCE_FOLDER, FOLDER_TO_STORE_CHECKPOINTS, name);
+        Path target = root.resolve(FOLDER_TO_STORE_DB).resolve(FOLDER_TO_STORE_CHAIN_STATE);
+        if (Files.exists(root))
+            throw new FileAlreadyExistsException(root.toString());
+        Files.createDirectories(target.getParent());
+        List<Lock> locks = shards.isEmpty() ? List.of() : lockEverything();
+        try {
+            try (Checkpoint checkpoint = Checkpoint.create(rocksDB)) {
+                checkpoint.createCheckpoint(target.toString());
+            }
+            for (int i = 0; i < shards.size(); i++) {
+                try (Checkpoint checkpoint = Checkpoint.create(shards.get(i).rocksDB())) {
+                    checkpoint.createCheckpoint(target.resolveSibling(FOLDER_TO_STORE_SHARD + i).toString());
+                }
+            }
+        } finally {
+            unlockAll(locks);
+        }
+        log.info("Created checkpoint of the DB at {}", target);
+        return root;
+    }
+
+    /**
+     * @return DBs that are to be given a TTL but were written with level compaction, which FIFO compaction cannot take over
+     */
+    private Set<DbName> levelCompactedExpirableColumnFamilies(File dbDir) {
+        Set<DbName> result = EnumSet.noneOf(DbName.class);
+        if (ttlOptions.isEmpty() || !new File(dbDir, "CURRENT").isFile())
+            return result;
+        List<ColumnFamilyDescriptor> existing = new ArrayList<>();
+        try (ConfigOptions configOptions = new ConfigOptions().setIgnoreUnknownOptions(true);
+             DBOptions existingDBOptions = new DBOptions()) {
+            OptionsUtil.loadLatestOptions(configOptions, dbDir.getAbsolutePath(), existingDBOptions, existing);
+            for (ColumnFamilyDescriptor descriptor : existing)
+                for (DbName dbName : ttlOptions.keySet())
+                    if (Arrays.equals(descriptor.getName(), dbName.toString().getBytes()) && descriptor.getOptions().compactionStyle() != CompactionStyle.FIFO)
+                        result.add(dbName);
+        } catch (RocksDBException e) {
+            log.error("Error loading the options of the existing DB, cause: {}, message: {}", e.getCause(), e.getMessage());
+        } finally {
+            existing.forEach(descriptor -> descriptor.getOptions().close());
+        }
+        return result;
+    }
+
+    // the contents are transient signaling state and are dropped rather than copied
+    private void recreateWithTtl(DbName dbName) throws RocksDBException {
+        int index = COLUMN_FAMILIES.indexOf(dbName) + 1;
+        ColumnFamilyHandle previous = handles.get(index);
+        rocksDB.dropColumnFamily(previous);
+        previous.close();
+        ColumnFamilyHandle handle = rocksDB.createColumnFamily(new ColumnFamilyDescriptor(dbName.toString().getBytes(), ttlOptions.get(dbName)));
+        handles.set(index, handle);
+        columnFamilies.put(dbName, handle);
+        rocksDB.delete(metadata, countKey(dbName));
+        log.info("Recreated {} with a TTL of {}s; its previous entries were dropped", dbName, ttlSeconds.get(dbName));
+    }
+
+    /**
+     * Copies the contents of DBs created by earlier versions (one RocksDB instance per DbName stored under /LOCATION_TO_STORE_DB/DB_NAME)
+     * into their column families; The old directory is renamed once its contents have been copied so that it is not migrated again
+     */
+    private void migrateLegacyDBs() {
+        if (rocksDB == null)
+            return;
+        for (DbName dbName : COLUMN_FAMILIES) {
+            File legacyDir = new File(LOCATION_TO_STORE_DB, dbName.toString());
+            if (!new File(legacyDir, "CURRENT").isFile())
+                continue;
+
+            log.info("Migrating legacy RocksDB {} into column family {} ...", legacyDir.getAbsolutePath(), dbName);
+            long migrated = 0;
+            try (final Options options = new Options();
+                 final RocksDB legacy = RocksDB.openReadOnly(options, legacyDir.getAbsolutePath());
+                 final RocksIterator itr = legacy.newIterator();
+                 final WriteOptions writeOptions = new WriteOptions().setSync(true)) {
+                WriteBatch batch = new WriteBatch();
+                try {
+                    for (itr.seekToFirst(); itr.isValid(); itr.next()) {
+                        batch.put(columnFamilies.get(dbName), toBinaryKey(dbName, itr.key()), itr.value());
+                        if (++migrated % MIGRATION_BATCH_SIZE == 0) {
+                            rocksDB.write(writeOptions, batch);
+                            batch.close();
+                            batch = new WriteBatch();
+                        }
+                    }
+                    rocksDB.write(writeOptions, batch);
+                } finally {
+                    batch.close();
+                }
+                // the entries were copied without being counted
+                rocksDB.delete(metadata, countKey(dbName));
+            } catch (RocksDBException e) {
+                log.error("Error migrating legacy RocksDB {}, cause: {}, message: {}", dbName, e.getCause(), e.getMessage());
+                continue;
+            }
+
+            File renamedDir = new File(LOCATION_TO_STORE_DB, dbName + MIGRATED_SUFFIX);
+            if (legacyDir.renameTo(renamedDir))
+                log.info("Migrated {} entries of {}; legacy files moved to {}", migrated, dbName, renamedDir.getAbsolutePath());
+            else
+                log.error("Migrated {} entries of {} but was unable to rename {}; it will be migrated again on the next start", migrated, dbName, legacyDir.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Earlier versions stored every key as the bytes of its String form;
+     * Rewrites the keys of the DBs holding hashes and addresses to their raw form as defined by {@link ByteCodec#keyOf(DbName)}
+     */
+    private void migrateKeyFormat() {
+        if (rocksDB == null)
+            return;
+        try {
+            if (rocksDB.get(metadata, KEY_FORMAT_KEY) != null)
+                return;
+            for (DbName dbName : COLUMN_FAMILIES) {
+                if (ByteCodec.keyOf(dbName) == ByteCodec.UTF8)
+                    continue;
+                long migrated = 0;
+                try (final RocksIterator itr = rocksDB.newIterator(columnFamily(dbName));
+                     final WriteOptions writeOptions = new WriteOptions().setSync(true)) {
+                    WriteBatch batch = new WriteBatch();
+                    try {
+                        for (itr.seekToFirst(); itr.isValid(); itr.next()) {
+                            byte[] key = toBinaryKey(dbName, itr.key());
+                            if (Arrays.equals(key, itr.key()))
+                                continue;
+                            batch.put(columnFamily(dbName), key, itr.value());
+                            batch.delete(columnFamily(dbName), itr.key());
+                            if (++migrated % MIGRATION_BATCH_SIZE == 0) {
+                                rocksDB.write(writeOptions, batch);
+                                batch.close();
+                                batch = new WriteBatch();
+                            }
+                        }
+                        rocksDB.write(writeOptions, batch);
+                    } finally {
+                        batch.close();
+                    }
+                }
+                if (migrated > 0)
+                    log.info("Migrated {} keys of {} to their binary form", migrated, dbName);
+            }
+            rocksDB.put(metadata, KEY_FORMAT_KEY, ByteCodec.UTF8.encode("1"));
+        } catch (RocksDBException e) {
+            log.error("Error migrating keys to their binary form, cause: {}, message: {}", e.getCause(), e.getMessage());
+        }
+    }
+
+    // keys that cannot be decoded (already binary or invalid) are kept as they are
+    private static byte[] toBinaryKey(DbName dbName, byte[] key) {
+        try {
+            return ByteCodec.keyOf(dbName).encode(ByteCodec.UTF8.decode(key));
+        } catch (IllegalArgumentException e) {
+            return key;
+        }
+    }
+
+    /**
+     * Counts the entries of every DbName that has no count recorded yet (DBs created by earlier versions or just migrated);
+     * From then on the counts are kept up to date along with every write
+     */
+    private void initializeCounts() {
+        if (rocksDB == null)
+            return;
+        for (DbName dbName : COLUMN_FAMILIES) {
+            if (!COUNTED.contains(dbName))
+                continue;
+            // the count of a sharded DB is the sum of the counts kept by each shard
+            for (Partition partition : partitions(dbName)) {
+                try {
+                    if (partition.rocksDB().get(partition.metadata(), countKey(dbName)) != null)
+                        continue;
+                    long count = 0;
+                    try (RocksIterator itr = partition.rocksDB().newIterator(partition.handle())) {
+                        for (itr.seekToFirst(); itr.isValid(); itr.next())
+                            count++;
+                    }
+                    partition.rocksDB().put(partition.metadata(), countKey(dbName), encodeCount(count));
+                    log.info("Initialized count of {} to {}{}", dbName, count, partition.shard() == MAIN ? "" : " in shard " + partition.shard());
+                } catch (RocksDBException e) {
+                    log.error("Error initializing count of {}, cause: {}, message: {}", dbName, e.getCause(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        closed = true;
+        for (Shard shard : shards) {
+            shard.handles().forEach(ColumnFamilyHandle::close);
+            shard.rocksDB().close();
+        }
+        for (ColumnFamilyHandle handle : handles)
+            handle.close();
+        if (rocksDB != null)
+            rocksDB.close();
+        if (dbOptions != null)
+            dbOptions.close();
+        if (statistics != null)
+            statistics.close();
+        if (columnFamilyOptions != null)
+            columnFamilyOptions.close();
+        if (accountsOptions != null)
+            accountsOptions.close();
+        ttlOptions.values().forEach(ColumnFamilyOptions::close);
+        if (accountsMergeOperator != null)
+            accountsMergeOperator.close();
+        if (metadataOptions != null)
+            metadataOptions.close();
+        if (writeBufferManager != null)
+            writeBufferManager.close();
+        if (bloomFilter != null)
+            bloomFilter.close();
+        if (blockCache != null)
+            blockCache.close();
+        if (secondaryDir != null) {
+            try (Stream<Path> files = Files.walk(secondaryDir)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList())
+                    Files.delete(file);
+            } catch (IOException e) {
+                log.error("Unable to remove {}, message: {}", secondaryDir, e.getMessage());
+            }
+        }
+    }
+
+    ColumnFamilyHandle columnFamily(DbName dbName) {
+        ColumnFamilyHandle handle = columnFamilies.get(dbName);
+        if (handle == null)
+            throw new IllegalArgumentException(String.format("%s is not a valid DB name", dbName));
+        return handle;
+    }
+
+    /**
+     * RocksDB instance and column family holding some of the entries of a DB, along with the metadata column family of that instance
+     *
+     * @param shard Index of the shard; MAIN for the main DB
+     */
+    record Partition(int shard, RocksDB rocksDB, ColumnFamilyHandle handle, ColumnFamilyHandle metadata) {
+    }
+
+    // handles in the order of the descriptors of openShard()
+    private record Shard(RocksDB rocksDB, List<ColumnFamilyHandle> handles) {
+        ColumnFamilyHandle columnFamily(DbName dbName) {
+            return handles.get(SHARDABLE.indexOf(dbName) + 1);
+        }
+
+        ColumnFamilyHandle metadata() {
+            return handles.get(SHARDABLE.size() + 1);
+        }
+    }
+
+    private boolean sharded(DbName db) {
+        return !shards.isEmpty() && SHARDABLE.contains(db);
+    }
+
+    // Arrays.hashCode is specified, so a key is mapped to the same shard by every version and JVM
+    private int shardOf(DbName db, byte[] key) {
+        return sharded(db) ? Math.floorMod(Arrays.hashCode(key), shards.size()) : MAIN;
+    }
+
+    /**
+     * @return The partition holding the key; the main DB unless the DB is sharded
+     */
+    Partition partition(DbName db, byte[] key) {
+        return partition(db, shardOf(db, key));
+    }
+
+    private Partition partition(DbName db, int shard) {
+        if (shard == MAIN)
+            return new Partition(MAIN, rocksDB, columnFamily(db), metadata);
+        Shard target = shards.get(shard);
+        return new Partition(shard, target.rocksDB(), target.columnFamily(db), target.metadata());
+    }
+
+    // every partition of the DB, in the order of their index
+    private List<Partition> partitions(DbName db) {
+        if (!sharded(db))
+            return List.of(partition(db, MAIN));
+        List<Partition> partitions = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++)
+            partitions.add(partition(db, i));
+        return partitions;
+    }
+
+    // the main DB followed by the shards
+    List<RocksDB> instances() {
+        List<RocksDB> instances = new ArrayList<>(shards.size() + 1);
+        instances.add(rocksDB);
+        shards.forEach(shard -> instances.add(shard.rocksDB()));
+        return instances;
+    }
+
+    private RocksDB instance(int shard) {
+        return shard == MAIN ? rocksDB : shards.get(shard).rocksDB();
+    }
+
+    /**
+     * Looks the keys up in the partitions holding them, in one call per partition
+     *
+     * @param readOptions ReadOptions to read each instance with (e.g. pinned to a snapshot); null for the defaults
+     * @return The values as they are stored (merge operands not folded), in the order of the keys
+     */
+    List<byte[]> multiGet(DbName db, List<byte[]> keys, Function<RocksDB, ReadOptions> readOptions) throws RocksDBException {
+        // RocksDB#multiGetAsList does not accept an empty list of keys
+        if (keys.isEmpty())
+            return new ArrayList<>();
+        if (!sharded(db))
+            return multiGet(partition(db, MAIN), keys, readOptions);
+        Map<Integer, List<Integer>> positions = new TreeMap<>();
+        for (int i = 0; i < keys.size(); i++)
+            positions.computeIfAbsent(shardOf(db, keys.get(i)), k -> new ArrayList<>()).add(i);
+        List<byte[]> values = new ArrayList<>(Collections.nCopies(keys.size(), null));
+        for (Map.Entry<Integer, List<Integer>> shard : positions.entrySet()) {
+            List<byte[]> shardValues = multiGet(partition(db, shard.getKey()), shard.getValue().stream().map(keys::get).toList(), readOptions);
+            for (int i = 0; i < shardValues.size(); i++)
+                values.set(shard.getValue().get(i), shardValues.get(i));
+        }
+        return values;
+    }
+
+    private static List<byte[]> multiGet(Partition partition, List<byte[]> keys, Function<RocksDB, ReadOptions> readOptions) throws RocksDBException {
+        List<ColumnFamilyHandle> handles = Collections.nCopies(keys.size(), partition.handle());
+        if (readOptions == null)
+            return partition.rocksDB().multiGetAsList(handles, keys);
+        return partition.rocksDB().multiGetAsList(readOptions.apply(partition.rocksDB()), handles, keys);
+    }
+
+    @Override
+    public void save(byte[] key, byte[] value, DbName db) {
+        log.info("----SAVE----      KEY: {}     VALUE: {}     DB: {}", printable(key, db), printable(value), db);
+        try (WriteBatch batch = new WriteBatch();
+             WriteOptions writeOptions = new WriteOptions()) {
+            Partition partition = partition(db, key);
+            batch.put(partition.handle(), key, value);
+            write(writeOptions, Map.of(partition.shard(), batch), Map.of(db, Map.of(ByteBuffer.wrap(key), true)));
+        } catch (IllegalArgumentException e) {
+            log.error("Please enter valid DB name");
         } catch (RocksDBException e) {
             log.error("Error saving entry in RocksDB, cause: {}, message: {}", e.getCause(), e.getMessage());
         }
     }
 
     @Override
-    public String find(String key, DbName db) {
-        log.info("----FIND----      KEY: {}     DB: {}", key, db);
-        String result = null;
-        try {
-            byte[] bytes = null;
-            switch (db) {
-                case BLOCKCHAIN -> bytes = dbBlockchain.get(key.getBytes());
-                case TRANSACTIONS -> bytes = dbTransactions.get(key.getBytes());
-                case TRANSACTIONS_POOL -> bytes = dbTransactionsPool.get(key.getBytes());
-                case NODES -> bytes = dbNodes.get(key.getBytes());
-                case WALLETS -> bytes = dbWallets.get(key.getBytes());
-                case ACCOUNTS -> bytes = dbAccounts.get(key.getBytes());
-                case WEBRTC -> bytes = dbWebrtc.get(key.getBytes());
-                case P2P -> bytes = dbP2P.get(key.getBytes());
-                default -> log.error("Please enter valid DB name");
-            }
-            if (bytes == null) return null;
-            result = new String(bytes);
+    public byte[] find(byte[] key, DbName db) {
+        log.info("----FIND----      KEY: {}     DB: {}", printable(key, db), db);
+        try {
+            Partition partition = partition(db, key);
+            return resolve(db, partition.rocksDB().get(partition.handle(), key));
+        } catch (IllegalArgumentException e) {
+            log.error("Please enter valid DB name");
         } catch (RocksDBException e) {
-            log.error("Error retrieving the entry in RocksDB from key: {}, cause: {}, message: {}", key, e.getCause(), e.getMessage());
+            log.error("Error retrieving the entry in RocksDB from key: {}, cause: {}, message: {}", printable(key, db), e.getCause(), e.getMessage());
         }
-        return result;
+        return null;
     }
 
     @Override
-    public synchronized boolean delete(String key, DbName db) {
-        log.info("----DELETE----      KEY: {}     DB: {}", key, db);
-        try {
-            switch (db) {
-                case BLOCKCHAIN -> dbBlockchain.delete(key.getBytes());
-                case TRANSACTIONS -> dbTransactions.delete(key.getBytes());
-                case TRANSACTIONS_POOL -> dbTransactionsPool.delete(key.getBytes());
-                case NODES -> dbNodes.delete(key.getBytes());
-                case WALLETS -> dbWallets.delete(key.getBytes());
-                case ACCOUNTS -> dbAccounts.delete(key.getBytes());
-                case WEBRTC -> dbWebrtc.delete(key.getBytes());
-                case P2P -> dbP2P.delete(key.getBytes());
-                default -> {
-                    log.error("Please enter valid DB name");
-                    return false;
-                }
-            }
+    public List<byte[]> multiFind(List<byte[]> keys, DbName db) {
+        log.info("----MULTI FIND----      KEYS: {}     DB: {}", keys.size(), db);
+        try {
+            List<byte[]> values = multiGet(db, keys, null);
+            if (db == ACCOUNTS)
+                values.replaceAll(value -> resolve(db, value));
+            return values;
+        } catch (IllegalArgumentException e) {
+            log.error("Please enter valid DB name");
         } catch (RocksDBException e) {
-            log.error("Error deleting entry in RocksDB, cause: {}, message: {}", e.getCause(), e.getMessage());
+            log.error("Error retrieving {} entries in RocksDB, cause: {}, message: {}", keys.size(), e.getCause(), e.getMessage());
         }
-        return true;
+        return Collections.nCopies(keys.size(), null);
     }
 
     @Override
-    public Map<String, String> getList(DbName db) {
-        log.info("----GET LIST----      DB: {}", db);
-        Map<String, String> result = new HashMap<>();
-
-        RocksIterator itr = null;
-        switch (db) {
-            case BLOCKCHAIN -> itr = dbBlockchain.newIterator();
-            case TRANSACTIONS -> itr = dbTransactions.newIterator();
-            case TRANSACTIONS_POOL -> itr = dbTransactionsPool.newIterator();
-            case NODES -> itr = dbNodes.newIterator();
-            case WALLETS -> itr = dbWallets.newIterator();
-            case ACCOUNTS -> itr = dbAccounts.newIterator();
-            case WEBRTC -> itr = dbWebrtc.newIterator();
-            case P2P -> itr = dbP2P.newIterator();
-            default -> log.error("Please enter valid DB name");
-        }
-
-        assert itr != null;
-        itr.seekToFirst();
-        while (itr.isValid()) {
-            result.put(new String(itr.key()), new String(itr.value()));
-            log.info("Key: {}, Value: {}", new String(itr.key()), new String(itr.value()));
-            itr.next();
+    public void merge(byte[] key, byte[] operand, DbName db) {
+        log.info("----MERGE----      KEY: {}     OPERAND: {}     DB: {}", printable(key, db), printable(operand), db);
+        try (WriteBatch batch = new WriteBatch();
+             WriteOptions writeOptions = new WriteOptions()) {
+            Partition partition = partition(db, key);
+            batch.merge(partition.handle(), key, operand);
+            write(writeOptions, Map.of(partition.shard(), batch), Map.of(db, Map.of(ByteBuffer.wrap(key), true)));
+        } catch (IllegalArgumentException e) {
+            log.error("Please enter valid DB name");
+        } catch (RocksDBException e) {
+            log.error("Error merging entry in RocksDB, cause: {}, message: {}", e.getCause(), e.getMessage());
         }
-        return result;
     }
 
     @Override
-    public long getCount(DbName db) {
-        switch (db) {
-            case BLOCKCHAIN -> {
-                return dbBlockchain.getLatestSequenceNumber();
+    public boolean delete(byte[] key, DbName db) {
+        log.info("----DELETE----      KEY: {}     DB: {}", printable(key, db), db);
+        try (WriteBatch batch = new WriteBatch();
+             WriteOptions writeOptions = new WriteOptions()) {
+            Partition partition = partition(db, key);
+            batch.delete(partition.handle(), key);
+            write(writeOptions, Map.of(partition.shard(), batch), Map.of(db, Map.of(ByteBuffer.wrap(key), false)));
+        } catch (IllegalArgumentException e) {
+            log.error("Please enter valid DB name");
+            return false;
+        } catch (RocksDBException e) {
+            log.error("Error deleting entry in RocksDB, cause: {}, message: {}", e.getCause(), e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * Writes the batches along with the changes they make to the count of entries of each DB; A batch written to a single instance is applied atomically. <br>
+     * A batch spanning several instances (the main DB and shards, or several shards) is first written to the main DB along with an intent record
+     * holding its writes to the shards, which is removed once every shard has applied them. The write locks of its keys are held until then,
+     * and the intents left by a crash are replayed on the next start, so each instance ends up with all of the batch
+     *
+     * @param batches Batch of each partition written to (see {@link #partition(DbName, byte[])}); Either WriteBatches or WriteBatchWithIndexes
+     * @param written For every DB and key written by the batches, whether the key exists once they are applied (false if it was deleted)
+     */
+    void write(WriteOptions writeOptions, Map<Integer, ? extends AbstractWriteBatch> batches, Map<DbName, Map<ByteBuffer, Boolean>> written) throws RocksDBException {
+        if (secondaryDir != null)
+            throw new RocksDBException("Writes are not supported in query-only mode");
+        List<Object> lockKeys = new ArrayList<>();
+        written.forEach((db, keys) -> keys.keySet().forEach(key -> lockKeys.add(List.of(db, key))));
+        List<Lock> locks = lockAll(lockKeys);
+
+        Map<Integer, AbstractWriteBatch> toWrite = new TreeMap<>(batches);
+        WriteBatch intentBatch = null;
+        try {
+            if (written.containsKey(ACCOUNTS))
+                fold(written.get(ACCOUNTS).keySet(), writeOptions);
+            for (Map.Entry<DbName, Map<ByteBuffer, Boolean>> entry : written.entrySet()) {
+                if (!COUNTED.contains(entry.getKey()))
+                    continue;
+                // every instance keeps the count of the entries it holds
+                Map<Partition, Long> deltas = new LinkedHashMap<>();
+                for (Map.Entry<ByteBuffer, Boolean> key : entry.getValue().entrySet()) {
+                    Partition partition = partition(entry.getKey(), key.getKey().array());
+                    boolean existed = partition.rocksDB().keyMayExist(partition.handle(), key.getKey().array(), null)
+                            && partition.rocksDB().get(partition.handle(), key.getKey().array()) != null;
+                    if (existed != key.getValue())
+                        deltas.merge(partition, key.getValue() ? 1L : -1L, Long::sum);
+                }
+                for (Map.Entry<Partition, Long> delta : deltas.entrySet())
+                    if (delta.getValue() != 0)
+                        toWrite.get(delta.getKey().shard()).merge(delta.getKey().metadata(), countKey(entry.getKey()), encodeCount(delta.getValue()));
             }
-            case TRANSACTIONS -> {
-                return dbTransactions.getLatestSequenceNumber();
+
+            if (toWrite.size() <= 1) {
+                for (Map.Entry<Integer, AbstractWriteBatch> batch : toWrite.entrySet())
+                    write(instance(batch.getKey()), writeOptions, batch.getValue());
+                return;
             }
-            case TRANSACTIONS_POOL -> {
-                return dbTransactionsPool.getLatestSequenceNumber();
+
+            byte[] intentKey = (SHARD_INTENT_KEY_PREFIX + UUID.randomUUID()).getBytes();
+            byte[] intent = encodeIntent(toWrite);
+            if (!toWrite.containsKey(MAIN)) {
+                intentBatch = new WriteBatch();
+                toWrite.put(MAIN, intentBatch);
             }
-            case NODES -> {
-                return dbNodes.getLatestSequenceNumber();
+            toWrite.get(MAIN).put(metadata, intentKey, intent);
+            // the main DB comes first in the map
+            for (Map.Entry<Integer, AbstractWriteBatch> batch : toWrite.entrySet())
+                write(instance(batch.getKey()), writeOptions, batch.getValue());
+            rocksDB.delete(metadata, writeOptions, intentKey);
+        } finally {
+            unlockAll(locks);
+            if (intentBatch != null)
+                intentBatch.close();
+        }
+    }
+
+    private static void write(RocksDB instance, WriteOptions writeOptions, AbstractWriteBatch batch) throws RocksDBException {
+        if (batch instanceof WriteBatchWithIndex indexedBatch)
+            instance.write(writeOptions, indexedBatch);
+        else
+            instance.write(writeOptions, (WriteBatch) batch);
+    }
+
+    // index and serialized WriteBatch of every shard written to; replayed by replayShardIntents()
+    private static byte[] encodeIntent(Map<Integer, AbstractWriteBatch> batches) throws RocksDBException {
+        List<byte[]> data = new ArrayList<>();
+        int size = 0;
+        for (Map.Entry<Integer, AbstractWriteBatch> batch : batches.entrySet()) {
+            if (batch.getKey() == MAIN)
+                continue;
+            byte[] serialized = batch.getValue().getWriteBatch().data();
+            data.add(ByteBuffer.allocate(2 * Integer.BYTES).putInt(batch.getKey()).putInt(serialized.length).array());
+            data.add(serialized);
+            size += 2 * Integer.BYTES + serialized.length;
+        }
+        ByteBuffer intent = ByteBuffer.allocate(size);
+        data.forEach(intent::put);
+        return intent.array();
+    }
+
+    /**
+     * Rewrites entries of a DB in one batch per partition while holding their write locks, so that no write of those keys (ACCOUNTS merges included)
+     * made in the meantime is lost; Entries that are absent or that the rewrite leaves as they are stored are skipped.
+     * The rewrite is given the value as it is read (merge operands folded). The number of entries does not change, so the counts are left as they are
+     *
+     * @return Number of entries rewritten
+     */
+    int rewrite(DbName db, List<byte[]> keys, UnaryOperator<byte[]> rewrite) throws RocksDBException {
+        if (secondaryDir != null)
+            throw new RocksDBException("Writes are not supported in query-only mode");
+        if (keys.isEmpty())
+            return 0;
+        List<Object> lockKeys = new ArrayList<>();
+        keys.forEach(key -> lockKeys.add(List.of(db, ByteBuffer.wrap(key))));
+        List<Lock> locks = lockAll(lockKeys);
+
+        Map<Integer, WriteBatch> batches = new TreeMap<>();
+        try (WriteOptions writeOptions = new WriteOptions()) {
+            List<byte[]> values = multiGet(db, keys, null);
+            int rewritten = 0;
+            for (int i = 0; i < keys.size(); i++) {
+                byte[] stored = values.get(i);
+                if (stored == null)
+                    continue;
+                byte[] value = rewrite.apply(resolve(db, stored));
+                if (Arrays.equals(value, stored))
+                    continue;
+                Partition partition = partition(db, keys.get(i));
+                batches.computeIfAbsent(partition.shard(), k -> new WriteBatch()).put(partition.handle(), keys.get(i), value);
+                rewritten++;
             }
-            case WALLETS -> {
-                return dbWallets.getLatestSequenceNumber();
+            // rewriting an entry again is harmless, so each partition is written on its own
+            for (Map.Entry<Integer, WriteBatch> batch : batches.entrySet())
+                instance(batch.getKey()).write(writeOptions, batch.getValue());
+            return rewritten;
+        } finally {
+            unlockAll(locks);
+            batches.values().forEach(WriteBatch::close);
+        }
+    }
+
+    /**
+     * Writes the ACCOUNTS entries holding more than ACCOUNTS_FOLD_THRESHOLD merge operands back as the JSON they resolve to,
+     * so that an entry does not keep the whole history of its address; Called by write() with the locks of the keys held, before its batches are applied
+     */
+    private void fold(Set<ByteBuffer> keys, WriteOptions writeOptions) throws RocksDBException {
+        List<byte[]> keyList = keys.stream().map(ByteBuffer::array).toList();
+        List<byte[]> stored = multiGet(ACCOUNTS, keyList, null);
+        Map<Integer, WriteBatch> batches = new TreeMap<>();
+        try {
+            for (int i = 0; i < keyList.size(); i++) {
+                if (stored.get(i) == null || AccountsMerge.operands(stored.get(i)) <= config.getAccountsFoldThreshold())
+                    continue;
+                Partition partition = partition(ACCOUNTS, keyList.get(i));
+                batches.computeIfAbsent(partition.shard(), k -> new WriteBatch()).put(partition.handle(), keyList.get(i), AccountsMerge.resolve(stored.get(i)));
             }
-            case ACCOUNTS -> {
-                return dbAccounts.getLatestSequenceNumber();
+            // the entries resolve to the same JSON once folded, so each partition is written on its own
+            for (Map.Entry<Integer, WriteBatch> batch : batches.entrySet())
+                instance(batch.getKey()).write(writeOptions, batch.getValue());
+            if (!batches.isEmpty())
+                log.debug("Folded the merge operands of entries of {} in {} partitions", ACCOUNTS, batches.size());
+        } finally {
+            batches.values().forEach(WriteBatch::close);
+        }
+    }
+
+    // locks are taken in the order given by Striped#bulkGet so that concurrent writers cannot deadlock
+    private List<Lock> lockAll(List<Object> lockKeys) {
+        List<Lock> locks = new ArrayList<>();
+        for (Lock lock : writeLocks.bulkGet(lockKeys)) {
+            lock.lock();
+            locks.add(lock);
+        }
+        return locks;
+    }
+
+    // every stripe, in the same order as bulkGet; Once held, no write is in progress on any instance
+    private List<Lock> lockEverything() {
+        List<Lock> locks = new ArrayList<>(writeLocks.size());
+        for (int i = 0; i < writeLocks.size(); i++) {
+            Lock lock = writeLocks.getAt(i);
+            lock.lock();
+            locks.add(lock);
+        }
+        return locks;
+    }
+
+    private static void unlockAll(List<Lock> locks) {
+        for (int i = locks.size() - 1; i >= 0; i--)
+            locks.get(i).unlock();
+    }
+
+    @Override
+    public Map<byte[], byte[]> getList(DbName db) {
+        log.info("----GET LIST----      DB: {}", db);
+        Map<byte[], byte[]> result = new TreeMap<>(Arrays::compareUnsigned);
+        scan(db, null, 0, (key, value) -> {
+            result.put(key, value);
+            log.debug("Key: {}, Value: {}", printable(key, db), printable(value));
+            return true;
+        });
+        return result;
+    }
+
+    @Override
+    public int scan(DbName db, byte[] fromKey, int limit, BiPredicate<byte[], byte[]> consumer) {
+        log.info("----SCAN----      FROM: {}     LIMIT: {}     DB: {}", printable(fromKey, db), limit, db);
+        return scan(db, fromKey, null, limit, consumer);
+    }
+
+    @Override
+    public int scanPrefix(DbName db, byte[] prefix, int limit, BiPredicate<byte[], byte[]> consumer) {
+        log.info("----SCAN PREFIX----      PREFIX: {}     LIMIT: {}     DB: {}", Utility.bytesToHex(prefix), limit, db);
+        return scan(db, prefix, prefix, limit, consumer);
+    }
+
+    // the iterators of the shards of a sharded DB are merged in key order; a DB that is not sharded has a single one
+    private int scan(DbName db, byte[] fromKey, byte[] prefix, int limit, BiPredicate<byte[], byte[]> consumer) {
+        int visited = 0;
+        List<RocksIterator> iterators = new ArrayList<>();
+        try {
+            PriorityQueue<Cursor> cursors = new PriorityQueue<>();
+            for (Partition partition : partitions(db)) {
+                RocksIterator itr = partition.rocksDB().newIterator(partition.handle());
+                iterators.add(itr);
+                if (fromKey == null)
+                    itr.seekToFirst();
+                else
+                    itr.seek(fromKey);
+                if (itr.isValid())
+                    cursors.add(new Cursor(itr.key(), itr));
             }
-            case WEBRTC -> {
-                return dbWebrtc.getLatestSequenceNumber();
+            while (!cursors.isEmpty() && (limit <= 0 || visited < limit)) {
+                Cursor cursor = cursors.poll();
+                if (prefix != null && !startsWith(cursor.key(), prefix))
+                    break;
+                visited++;
+                if (!consumer.test(cursor.key(), resolve(db, cursor.iterator().value())))
+                    break;
+                cursor.iterator().next();
+                if (cursor.iterator().isValid())
+                    cursors.add(new Cursor(cursor.iterator().key(), cursor.iterator()));
             }
-            case P2P -> {
-                return dbP2P.getLatestSequenceNumber();
+        } catch (IllegalArgumentException e) {
+            log.error("Please enter valid DB name");
+        } finally {
+            iterators.forEach(RocksIterator::close);
+        }
+        return visited;
+    }
+
+    // current key of an iterator; keys are compared bytewise, as RocksDB orders them
+    private record Cursor(byte[] key, RocksIterator iterator) implements Comparable<Cursor> {
+        @Override
+        public int compareTo(Cursor other) {
+            return Arrays.compareUnsigned(key, other.key);
+        }
+    }
+
+    private static boolean startsWith(byte[] key, byte[] prefix) {
+        return key.length >= prefix.length && Arrays.equals(key, 0, prefix.length, prefix, 0, prefix.length);
+    }
+
+    @Override
+    public long getCount(DbName db) {
+        if (!columnFamilies.containsKey(db)) {
+            log.error("Please enter valid DB name");
+            return 0L;
+        }
+        // entries of DBs with a TTL expire without going through write(), so they could not be counted exactly either
+        if (!COUNTED.contains(db))
+            return Math.max(property(db, "rocksdb.estimate-num-keys"), 0L);
+        try {
+            long count = 0L;
+            for (Partition partition : partitions(db)) {
+                byte[] stored = partition.rocksDB().get(partition.metadata(), countKey(db));
+                if (stored != null)
+                    count += decodeCount(stored);
             }
-            default -> log.error("Please enter valid DB name");
+            return count;
+        } catch (RocksDBException e) {
+            log.error("Error retrieving the count of {}, cause: {}, message: {}", db, e.getCause(), e.getMessage());
         }
         return 0L;
     }
+
+    @Override
+    public KeyValueBatch<byte[], byte[]> beginBatch() {
+        return new RocksDBWriteBatch(this);
+    }
+
+    /**
+     * Snapshots of the shards are taken while writes are held back, so that no batch spanning several instances is seen by some snapshots only
+     */
+    @Override
+    public KeyValueSnapshot<byte[], byte[]> openSnapshot() {
+        if (shards.isEmpty())
+            return new RocksDBSnapshot(this, instances());
+        List<Lock> locks = lockEverything();
+        try {
+            return new RocksDBSnapshot(this, instances());
+        } finally {
+            unlockAll(locks);
+        }
+    }
+
+    /**
+     * Entries expire along with the SST file holding them, so the memtables of DBs with a TTL are flushed regularly;
+     * Expired files are only dropped when a compaction runs, which is requested right after (FIFO compaction does not rewrite live files).
+     * An entry therefore lives between its TTL and its TTL plus ROCKSDB_TTL_FLUSH_INTERVAL_MS
+     */
+    @Scheduled(fixedDelayString = "${ROCKSDB_TTL_FLUSH_INTERVAL_MS:600000}")
+    void expireTransientEntries() {
+        // the primary node expires the entries
+        if (closed || rocksDB == null || secondaryDir != null)
+            return;
+        try (FlushOptions flushOptions = new FlushOptions().setWaitForFlush(true)) {
+            for (DbName dbName : ttlSeconds.keySet()) {
+                rocksDB.flush(flushOptions, columnFamily(dbName));
+                rocksDB.compactRange(columnFamily(dbName));
+            }
+        } catch (RocksDBException e) {
+            log.error("Error expiring entries of DBs with a TTL, cause: {}, message: {}", e.getCause(), e.getMessage());
+        }
+    }
+
+    // properties (entries, deletions, sizes ...) of every SST file of the DB, of all its shards; empty once the DB is closed
+    Collection<TableProperties> tableProperties(DbName db) throws RocksDBException {
+        if (closed)
+            return List.of();
+        List<TableProperties> properties = new ArrayList<>();
+        for (Partition partition : partitions(db))
+            properties.addAll(partition.rocksDB().getPropertiesOfAllTables(partition.handle()).values());
+        return properties;
+    }
+
+    /**
+     * Compacts the whole key range of the DB after flushing its memtable; The bottommost level is rewritten as well,
+     * so tombstones and the entries they shadow are dropped instead of lingering in the last level
+     */
+    void compact(DbName db) throws RocksDBException {
+        if (secondaryDir != null)
+            throw new RocksDBException("Compactions are not supported in query-only mode");
+        try (CompactRangeOptions options = new CompactRangeOptions()
+                .setBottommostLevelCompaction(CompactRangeOptions.BottommostLevelCompaction.kForceOptimized)) {
+            for (Partition partition : partitions(db))
+                partition.rocksDB().compactRange(partition.handle(), null, null, options);
+        }
+    }
+
+    // null if entries of the DB do not expire
+    Long ttlSeconds(DbName db) {
+        return ttlSeconds.get(db);
+    }
+
+    /**
+     * @return Value of the integer property (e.g. rocksdb.estimate-num-keys) of the DB, summed over its shards; -1 if it is not available
+     */
+    long property(DbName db, String property) {
+        if (closed)
+            return -1L;
+        try {
+            long value = 0L;
+            for (Partition partition : partitions(db))
+                value += partition.rocksDB().getLongProperty(partition.handle(), property);
+            return value;
+        } catch (RocksDBException e) {
+            log.error("Error retrieving property {} of {}, message: {}", property, db, e.getMessage());
+        }
+        return -1L;
+    }
+
+    long tickerCount(TickerType ticker) {
+        return closed ? 0L : statistics.getTickerCount(ticker);
+    }
+
+    // in microseconds; null once the DB is closed
+    HistogramData histogram(HistogramType histogram) {
+        return closed ? null : statistics.getHistogramData(histogram);
+    }
+
+    // entries of the METADATA column family other than the counts (e.g. the schema version); null if absent or once the DB is closed
+    byte[] metadata(String key) {
+        if (closed)
+            return null;
+        try {
+            return rocksDB.get(metadata, key.getBytes());
+        } catch (RocksDBException e) {
+            log.error("Error reading metadata {}, cause: {}, message: {}", key, e.getCause(), e.getMessage());
+        }
+        return null;
+    }
+
+    // a null value removes the entry
+    void saveMetadata(String key, byte[] value) {
+        try {
+            if (value == null)
+                rocksDB.delete(metadata, key.getBytes());
+            else
+                rocksDB.put(metadata, key.getBytes(), value);
+        } catch (RocksDBException e) {
+            log.error("Error saving metadata {}, cause: {}, message: {}", key, e.getCause(), e.getMessage());
+        }
+    }
+
+    // folds the merge operands of ACCOUNTS entries; entries of other DBs are returned as they are
+    static byte[] resolve(DbName db, byte[] value) {
+        return db == ACCOUNTS && value != null ? AccountsMerge.resolve(value) : value;
+    }
+
+    // keys are logged in their String form; values are JSON and are cut short
+    static String printable(byte[] key, DbName db) {
+        if (key == null)
+            return null;
+        try {
+            return ByteCodec.keyOf(db).decode(key);
+        } catch (IllegalArgumentException e) {
+            return Utility.bytesToHex(key);
+        }
+    }
+
+    static String printable(byte[] value) {
+        int length = Math.min(value.length, 25);
+        String more = value.length > length ? " ......." : "";
+        // records encoded by RecordCodec (e.g. transactions) start with its version, which no text (JSON, locations, names) starts with; they are logged in hex
+        if (length > 0 && value[0] == RecordCodec.VERSION)
+            return "0x" + HexFormat.of().formatHex(value, 0, length) + more;
+        // the text is cut before a character whose bytes would not all fit (UTF-8 continuation bytes are 10xxxxxx)
+        while (length > 0 && length < value.length && (value[length] & 0xC0) == 0x80)
+            length--;
+        return new String(value, 0, length, StandardCharsets.UTF_8) + more;
+    }
+
+    private static byte[] countKey(DbName dbName) {
+        return (COUNT_KEY_PREFIX + dbName).getBytes();
+    }
+
+    // the uint64add merge operator works on 64-bit little-endian integers; negative deltas wrap around to a subtraction
+    private static byte[] encodeCount(long count) {
+        return ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).putLong(count).array();
+    }
+
+    private static long decodeCount(byte[] count) {
+        return ByteBuffer.wrap(count).order(ByteOrder.LITTLE_ENDIAN).getLong();
+    }
 }
@@ -0,0 +1,61 @@
+package io.mycrypto.core.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.rocksdb.*;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link KeyValueSnapshot} backed by RocksDB Snapshots, one per RocksDB instance (the main DB and its shards); Every read is made with ReadOptions pinned to them
+ */
+@Slf4j
+class RocksDBSnapshot implements KeyValueSnapshot<byte[], byte[]> {
+    private final RocksDBRepositoryImpl repository;
+    private final Map<RocksDB, Snapshot> snapshots = new IdentityHashMap<>();
+    private final Map<RocksDB, ReadOptions> readOptions = new IdentityHashMap<>();
+
+    RocksDBSnapshot(RocksDBRepositoryImpl repository, List<RocksDB> instances) {
+        this.repository = repository;
+        for (RocksDB rocksDB : instances) {
+            Snapshot snapshot = rocksDB.getSnapshot();
+            snapshots.put(rocksDB, snapshot);
+            readOptions.put(rocksDB, new ReadOptions().setSnapshot(snapshot));
+        }
+    }
+
+    @Override
+    public byte[] find(byte[] key, DbName db) {
+        try {
+            RocksDBRepositoryImpl.Partition partition = repository.partition(db, key);
+            return RocksDBRepositoryImpl.resolve(db, partition.rocksDB().get(partition.handle(), readOptions.get(partition.rocksDB()), key));
+        } catch (IllegalArgumentException e) {
+            log.error("Please enter valid DB name");
+        } catch (RocksDBException e) {
+            log.error("Error retrieving the entry through snapshot from key: {}, cause: {}, message: {}", RocksDBRepositoryImpl.printable(key, db), e.getCause(), e.getMessage());
+        }
+        return null;
+    }
+
+    @Override
+    public List<byte[]> multiFind(List<byte[]> keys, DbName db) {
+        try {
+            List<byte[]> values = repository.multiGet(db, keys, readOptions::get);
+            values.replaceAll(value -> RocksDBRepositoryImpl.resolve(db, value));
+            return values;
+        } catch (IllegalArgumentException e) {
+            log.error("Please enter valid DB name");
+        } catch (RocksDBException e) {
+            log.error("Error retrieving {} entries through snapshot, cause: {}, message: {}", keys.size(), e.getCause(), e.getMessage());
+        }
+        return Collections.nCopies(keys.size(), null);
+    }
+
+    @Override
+    public void close() {
+        readOptions.values().forEach(ReadOptions::close);
+        snapshots.forEach(RocksDB::releaseSnapshot);
+    }
+}
@@ -0,0 +1,108 @@
+package io.mycrypto.core.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.rocksdb.*;
+
+import java.nio.ByteBuffer;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * {@link KeyValueBatch} backed by RocksDB WriteBatchWithIndexes so that reads within the batch also see its uncommitted writes;
+ * One per partition written to, as the entries of sharded DBs are held by other RocksDB instances than the main DB
+ */
+@Slf4j
+class RocksDBWriteBatch implements KeyValueBatch<byte[], byte[]> {
+    private final RocksDBRepositoryImpl repository;
+    // index of the partition ==> its batch; see RocksDBRepositoryImpl#partition
+    private final Map<Integer, WriteBatchWithIndex> batches = new TreeMap<>();
+    private final ReadOptions readOptions = new ReadOptions();
+    // keys written per DB and whether they exist once the batch is applied; needed to keep the counts of entries exact
+    private final Map<DbName, Map<ByteBuffer, Boolean>> written = new EnumMap<>(DbName.class);
+    private boolean committed = false;
+
+    RocksDBWriteBatch(RocksDBRepositoryImpl repository) {
+        this.repository = repository;
+    }
+
+    private WriteBatchWithIndex batch(RocksDBRepositoryImpl.Partition partition) {
+        return batches.computeIfAbsent(partition.shard(), k -> new WriteBatchWithIndex(true));
+    }
+
+    private int count() {
+        return batches.values().stream().mapToInt(WriteBatchWithIndex::count).sum();
+    }
+
+    @Override
+    public void save(byte[] key, byte[] value, DbName db) {
+        log.info("----BATCH SAVE----      KEY: {}     VALUE: {}     DB: {}", RocksDBRepositoryImpl.printable(key, db), RocksDBRepositoryImpl.printable(value), db);
+        try {
+            RocksDBRepositoryImpl.Partition partition = repository.partition(db, key);
+            batch(partition).put(partition.handle(), key, value);
+            written.computeIfAbsent(db, k -> new LinkedHashMap<>()).put(ByteBuffer.wrap(key), true);
+        } catch (RocksDBException e) {
+            log.error("Error adding entry to WriteBatch, cause: {}, message: {}", e.getCause(), e.getMessage());
+        }
+    }
+
+    @Override
+    public byte[] find(byte[] key, DbName db) {
+        try {
+            RocksDBRepositoryImpl.Partition partition = repository.partition(db, key);
+            WriteBatchWithIndex batch = batches.get(partition.shard());
+            byte[] value = batch == null
+                    ? partition.rocksDB().get(partition.handle(), readOptions, key)
+                    : batch.getFromBatchAndDB(partition.rocksDB(), partition.handle(), readOptions, key);
+            return RocksDBRepositoryImpl.resolve(db, value);
+        } catch (RocksDBException e) {
+            log.error("Error retrieving the entry through WriteBatch from key: {}, cause: {}, message: {}", RocksDBRepositoryImpl.printable(key, db), e.getCause(), e.getMessage());
+        }
+        return null;
+    }
+
+    @Override
+    public void delete(byte[] key, DbName db) {
+        log.info("----BATCH DELETE----      KEY: {}     DB: {}", RocksDBRepositoryImpl.printable(key, db), db);
+        try {
+            RocksDBRepositoryImpl.Partition partition = repository.partition(db, key);
+            batch(partition).delete(partition.handle(), key);
+            written.computeIfAbsent(db, k -> new LinkedHashMap<>()).put(ByteBuffer.wrap(key), false);
+        } catch (RocksDBException e) {
+            log.error("Error adding delete to WriteBatch, cause: {}, message: {}", e.getCause(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void merge(byte[] key, byte[] operand, DbName db) {
+        log.info("----BATCH MERGE----      KEY: {}     OPERAND: {}     DB: {}", RocksDBRepositoryImpl.printable(key, db), RocksDBRepositoryImpl.printable(operand), db);
+        try {
+            RocksDBRepositoryImpl.Partition partition = repository.partition(db, key);
+            batch(partition).merge(partition.handle(), key, operand);
+            written.computeIfAbsent(db, k -> new LinkedHashMap<>()).put(ByteBuffer.wrap(key), true);
+        } catch (RocksDBException e) {
+            log.error("Error adding merge to WriteBatch, cause: {}, message: {}", e.getCause(), e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean commit() {
+        log.info("----BATCH COMMIT----      ENTRIES: {}", count());
+        try (WriteOptions writeOptions = new WriteOptions().setSync(true)) {
+            repository.write(writeOptions, batches, written);
+            committed = true;
+        } catch (RocksDBException e) {
+            log.error("Error committing WriteBatch, cause: {}, message: {}", e.getCause(), e.getMessage());
+        }
+        return committed;
+    }
+
+    @Override
+    public void close() {
+        if (!committed && count() > 0)
+            log.warn("Discarding {} uncommitted entries of WriteBatch", count());
+        readOptions.close();
+        batches.values().forEach(WriteBatchWithIndex::close);
+    }
+}
@@ -0,0 +1,172 @@
+package io.mycrypto.core.repository;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.cfg.JsonNodeFeature;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.mycrypto.core.config.DodoCommonConfig;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.rocksdb.RocksDBException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.mycrypto.core.repository.DbName.*;
+
+/**
+ * Keeps track of the encoding of the values of TRANSACTIONS, TRANSACTIONS_POOL and ACCOUNTS through a schema version record
+ * and rewrites the records of older versions in the background while the node keeps serving requests. <br>
+ * Version 1: pretty-printed JSON; Version 2: compact JSON (ACCOUNTS entries with their merge operands folded);
+ * Version 3: transactions encoded by {@link RecordCodec}. <br>
+ * Records are rewritten SCHEMA_MIGRATION_BATCH_SIZE at a time and the key to continue from is saved after every batch,
+ * so a migration interrupted by a restart resumes where it stopped. Progress is published as schema.migration.*
+ */
+@Slf4j
+@Component
+@Profile("!" + InMemoryKeyValueRepository.PROFILE)
+public class SchemaMigrator implements MeterBinder {
+    public static final int SCHEMA_VERSION = 3;
+    private static final String SCHEMA_VERSION_KEY = "schema-version";
+    private static final String MIGRATION_DB_KEY = "schema-migration-db";
+    private static final String MIGRATION_CURSOR_KEY = "schema-migration-cursor";
+    private static final List<DbName> MIGRATED = List.of(TRANSACTIONS, TRANSACTIONS_POOL, ACCOUNTS);
+    // amounts are read as BigDecimal with their scale so that they are written back exactly as they were (e.g. 43.0000)
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)
+            .configure(JsonNodeFeature.STRIP_TRAILING_BIGDECIMAL_ZEROES, false);
+
+    @Autowired
+    private RocksDBRepositoryImpl repository;
+    @Autowired
+    private DodoCommonConfig config;
+
+    private volatile int version;
+    private volatile DbName migrating; // null once every record is of the current version
+    private byte[] cursor;
+    private volatile long total;
+    private final AtomicLong scanned = new AtomicLong();
+    private final AtomicLong rewritten = new AtomicLong();
+
+    @PostConstruct
+    void initialize() {
+        byte[] stored = repository.metadata(SCHEMA_VERSION_KEY);
+        // DBs created before the schema version was recorded hold version 1 records
+        version = stored == null ? 1 : Integer.parseInt(ByteCodec.UTF8.decode(stored));
+        if (version >= SCHEMA_VERSION) {
+            log.info("Records are of schema version {}", version);
+            return;
+        }
+        if (config.getQueryOnly()) {
+            log.info("Records are of schema version {}; They are migrated by the primary node", version);
+            return;
+        }
+
+        byte[] db = repository.metadata(MIGRATION_DB_KEY);
+        migrating = db == null ? MIGRATED.get(0) : DbName.valueOf(ByteCodec.UTF8.decode(db));
+        cursor = repository.metadata(MIGRATION_CURSOR_KEY);
+        for (DbName dbName : MIGRATED.subList(MIGRATED.indexOf(migrating), MIGRATED.size()))
+            total += repository.getCount(dbName);
+        log.info("Records are of schema version {}; Migrating up to {} records to version {} in the background, starting from {}", version, total, SCHEMA_VERSION, migrating);
+    }
+
+    /**
+     * @return Schema version of the records; records written since startup are of the current version already
+     */
+    public int version() {
+        return version;
+    }
+
+    @Scheduled(initialDelayString = "${SCHEMA_MIGRATION_INTERVAL_MS:1000}", fixedDelayString = "${SCHEMA_MIGRATION_INTERVAL_MS:1000}")
+    void migrateNextBatch() {
+        if (migrating == null)
+            return;
+
+        int batchSize = config.getSchemaMigrationBatchSize();
+        List<byte[]> keys = new ArrayList<>(batchSize + 1);
+        repository.scan(migrating, cursor, batchSize + 1, (key, value) -> keys.add(key));
+        byte[] next = keys.size() > batchSize ? keys.remove(batchSize) : null;
+        // an empty scan means that every record of the DB has been migrated (or that it holds none)
+        if (!keys.isEmpty()) {
+            try {
+                rewritten.addAndGet(repository.rewrite(migrating, keys, migrating == ACCOUNTS ? SchemaMigrator::compact : SchemaMigrator::encode));
+            } catch (RocksDBException | IllegalArgumentException e) {
+                // retried on the next run
+                log.error("Error migrating records of {}, cause: {}, message: {}", migrating, e.getCause(), e.getMessage());
+                return;
+            }
+        }
+        scanned.addAndGet(keys.size());
+
+        if (next != null) {
+            cursor = next;
+            repository.saveMetadata(MIGRATION_CURSOR_KEY, next);
+            return;
+        }
+
+        log.info("Migrated records of {} to schema version {}", migrating, SCHEMA_VERSION);
+        cursor = null;
+        repository.saveMetadata(MIGRATION_CURSOR_KEY, null);
+        int index = MIGRATED.indexOf(migrating) + 1;
+        if (index < MIGRATED.size()) {
+            migrating = MIGRATED.get(index);
+            repository.saveMetadata(MIGRATION_DB_KEY, ByteCodec.UTF8.encode(migrating.name()));
+            return;
+        }
+
+        repository.saveMetadata(SCHEMA_VERSION_KEY, ByteCodec.UTF8.encode(String.valueOf(SCHEMA_VERSION)));
+        repository.saveMetadata(MIGRATION_DB_KEY, null);
+        version = SCHEMA_VERSION;
+        migrating = null;
+        log.info("Schema migration completed; {} of {} records were rewritten", rewritten.get(), scanned.get());
+    }
+
+    // JSON values are written without whitespace; anything else (e.g. "EMPTY" entries of ACCOUNTS) is kept as it is
+    private static byte[] compact(byte[] value) {
+        if (value.length == 0 || value[0] != '{')
+            return value;
+        try {
+            return MAPPER.writeValueAsBytes(MAPPER.readTree(value));
+        } catch (IOException e) {
+            log.error("Unable to parse {} as JSON; the record is left as it is", RocksDBRepositoryImpl.printable(value));
+            return value;
+        }
+    }
+
+    // transactions of any earlier version are JSON
+    private static byte[] encode(byte[] value) {
+        if (!RecordCodec.isJson(value))
+            return value;
+        try {
+            return RecordCodec.encode(RecordCodec.decodeTransaction(value));
+        } catch (IOException e) {
+            log.error("Unable to encode {}; the record is left as it is", RocksDBRepositoryImpl.printable(value), e);
+            return value;
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("schema.version", this, SchemaMigrator::version)
+                .description("Schema version of the persisted records")
+                .register(registry);
+        FunctionCounter.builder("schema.migration.scanned", scanned, AtomicLong::get)
+                .description("Records checked by the schema migration since startup")
+                .register(registry);
+        FunctionCounter.builder("schema.migration.rewritten", rewritten, AtomicLong::get)
+                .description("Records rewritten to the current schema version since startup")
+                .register(registry);
+        Gauge.builder("schema.migration.progress", this, m -> m.migrating == null ? 1.0 : m.total == 0 ? 0.0 : Math.min(1.0, (double) m.scanned.get() / m.total))
+                .description("Share of the records left to migrate at startup that have been checked")
+                .register(registry);
+    }
+}
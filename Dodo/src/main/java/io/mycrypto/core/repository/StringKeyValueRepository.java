@@ -0,0 +1,195 @@
+package io.mycrypto.core.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+
+/**
+ * String view over the binary {@link KeyValueRepository}; Keys are converted with the {@link ByteCodec} of their DB and values are stored as UTF-8
+ */
+@Slf4j
+@Repository
+public class StringKeyValueRepository implements KeyValueRepository<String, String> {
+
+    @Autowired
+    private KeyValueRepository<byte[], byte[]> repository;
+
+    @Override
+    public void save(String key, String value, DbName db) {
+        byte[] encodedKey = encodeKey(key, db);
+        if (encodedKey != null)
+            repository.save(encodedKey, ByteCodec.UTF8.encode(value), db);
+    }
+
+    @Override
+    public String find(String key, DbName db) {
+        byte[] encodedKey = encodeKey(key, db);
+        return encodedKey == null ? null : ByteCodec.UTF8.decode(repository.find(encodedKey, db));
+    }
+
+    @Override
+    public List<String> multiFind(List<String> keys, DbName db) {
+        return decodeAll(keys, db, repository::multiFind);
+    }
+
+    @Override
+    public void merge(String key, String operand, DbName db) {
+        byte[] encodedKey = encodeKey(key, db);
+        if (encodedKey != null)
+            repository.merge(encodedKey, ByteCodec.UTF8.encode(operand), db);
+    }
+
+    @Override
+    public boolean delete(String key, DbName db) {
+        byte[] encodedKey = encodeKey(key, db);
+        return encodedKey != null && repository.delete(encodedKey, db);
+    }
+
+    @Override
+    public Map<String, String> getList(DbName db) {
+        Map<String, String> result = new LinkedHashMap<>();
+        for (Map.Entry<byte[], byte[]> entry : repository.getList(db).entrySet())
+            result.put(ByteCodec.keyOf(db).decode(entry.getKey()), ByteCodec.UTF8.decode(entry.getValue()));
+        return result;
+    }
+
+    @Override
+    public int scan(DbName db, String fromKey, int limit, BiPredicate<String, String> consumer) {
+        byte[] encodedFromKey = null;
+        if (fromKey != null && (encodedFromKey = encodeKey(fromKey, db)) == null)
+            return 0;
+        ByteCodec codec = ByteCodec.keyOf(db);
+        return repository.scan(db, encodedFromKey, limit, (key, value) -> consumer.test(codec.decode(key), ByteCodec.UTF8.decode(value)));
+    }
+
+    @Override
+    public int scanPrefix(DbName db, String prefix, int limit, BiPredicate<String, String> consumer) {
+        ByteCodec codec = ByteCodec.keyOf(db);
+        if (codec == ByteCodec.UTF8 || (codec == ByteCodec.HEX && prefix.length() % 2 == 0)) {
+            byte[] encodedPrefix = encodeKey(prefix, db);
+            return encodedPrefix == null ? 0 : repository.scanPrefix(db, encodedPrefix, limit, (key, value) -> consumer.test(codec.decode(key), ByteCodec.UTF8.decode(value)));
+        }
+
+        // the prefix has no binary equivalent (odd number of hex digits or Base58); falls back to filtering the whole DB
+        AtomicInteger visited = new AtomicInteger();
+        repository.scan(db, null, 0, (key, value) -> {
+            String decodedKey = codec.decode(key);
+            if (!decodedKey.startsWith(prefix))
+                return true;
+            visited.incrementAndGet();
+            return consumer.test(decodedKey, ByteCodec.UTF8.decode(value)) && (limit <= 0 || visited.get() < limit);
+        });
+        return visited.get();
+    }
+
+    @Override
+    public long getCount(DbName db) {
+        return repository.getCount(db);
+    }
+
+    @Override
+    public KeyValueBatch<String, String> beginBatch() {
+        return new StringBatch(repository.beginBatch());
+    }
+
+    @Override
+    public KeyValueSnapshot<String, String> openSnapshot() {
+        return new StringSnapshot(repository.openSnapshot());
+    }
+
+    private static byte[] encodeKey(String key, DbName db) {
+        try {
+            return ByteCodec.keyOf(db).encode(key);
+        } catch (IllegalArgumentException e) {
+            log.error("{} is not a valid key for {}", key, db);
+        }
+        return null;
+    }
+
+    private static List<String> decodeAll(List<String> keys, DbName db, BiFunction<List<byte[]>, DbName, List<byte[]>> multiFind) {
+        // keys that cannot be encoded are absent
+        List<Integer> positions = new ArrayList<>();
+        List<byte[]> encodedKeys = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            byte[] encodedKey = encodeKey(keys.get(i), db);
+            if (encodedKey != null) {
+                positions.add(i);
+                encodedKeys.add(encodedKey);
+            }
+        }
+
+        List<String> result = new ArrayList<>(Collections.nCopies(keys.size(), null));
+        List<byte[]> values = encodedKeys.isEmpty() ? List.of() : multiFind.apply(encodedKeys, db);
+        for (int i = 0; i < values.size(); i++)
+            result.set(positions.get(i), ByteCodec.UTF8.decode(values.get(i)));
+        return result;
+    }
+
+    private record StringSnapshot(KeyValueSnapshot<byte[], byte[]> snapshot) implements KeyValueSnapshot<String, String> {
+
+        @Override
+        public String find(String key, DbName db) {
+            byte[] encodedKey = encodeKey(key, db);
+            return encodedKey == null ? null : ByteCodec.UTF8.decode(snapshot.find(encodedKey, db));
+        }
+
+        @Override
+        public List<String> multiFind(List<String> keys, DbName db) {
+            return decodeAll(keys, db, snapshot::multiFind);
+        }
+
+        @Override
+        public void close() {
+            snapshot.close();
+        }
+    }
+
+    private record StringBatch(KeyValueBatch<byte[], byte[]> batch) implements KeyValueBatch<String, String> {
+
+        @Override
+        public void save(String key, String value, DbName db) {
+            byte[] encodedKey = encodeKey(key, db);
+            if (encodedKey != null)
+                batch.save(encodedKey, ByteCodec.UTF8.encode(value), db);
+        }
+
+        @Override
+        public String find(String key, DbName db) {
+            byte[] encodedKey = encodeKey(key, db);
+            return encodedKey == null ? null : ByteCodec.UTF8.decode(batch.find(encodedKey, db));
+        }
+
+        @Override
+        public void delete(String key, DbName db) {
+            byte[] encodedKey = encodeKey(key, db);
+            if (encodedKey != null)
+                batch.delete(encodedKey, db);
+        }
+
+        @Override
+        public void merge(String key, String operand, DbName db) {
+            byte[] encodedKey = encodeKey(key, db);
+            if (encodedKey != null)
+                batch.merge(encodedKey, ByteCodec.UTF8.encode(operand), db);
+        }
+
+        @Override
+        public boolean commit() {
+            return batch.commit();
+        }
+
+        @Override
+        public void close() {
+            batch.close();
+        }
+    }
+}
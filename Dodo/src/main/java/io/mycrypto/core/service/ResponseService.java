@@ -4,12 +4,15 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.mycrypto.core.config.DodoCommonConfig;
 import io.mycrypto.core.dto.*;
-import io.mycrypto.core.entity.Block;
 import io.mycrypto.core.entity.Transaction;
 import io.mycrypto.core.exception.MyCustomException;
+import io.mycrypto.core.repository.ByteCodec;
 import io.mycrypto.core.repository.DbName;
+import io.mycrypto.core.repository.KeyValueBatch;
 import io.mycrypto.core.repository.KeyValueRepository;
+import io.mycrypto.core.repository.RocksDBMaintenance;
 import io.mycrypto.core.service.block.BlockService;
+import io.mycrypto.core.service.checkpoint.CheckpointService;
 import io.mycrypto.core.service.transaction.TransactionService;
 import io.mycrypto.core.service.wallet.WalletService;
 import io.mycrypto.core.util.Utility;
@@ -23,6 +26,7 @@ import org.json.simple.parser.ParseException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.util.CollectionUtils;
 import org.springframework.util.ObjectUtils;
 
 import java.io.File;
@@ -60,6 +64,18 @@ public class ResponseService {
     @Autowired
     private KeyValueRepository<String, String> rocksDB;
 
+    // absent when running with the in-memory repository
+    @Autowired(required = false)
+    private CheckpointService checkpointService;
+
+    @Autowired(required = false)
+    private RocksDBMaintenance maintenance;
+
+    // APIs that write are served by the primary node only
+    private static ResponseEntity<Object> queryOnlyResponse() {
+        return ResponseEntity.badRequest().body(Utility.constructJsonResponse("msg", "This node is query-only; Send the request to the primary node"));
+    }
+
     // ---------BLOCKS--------------------------------------------------------------------------------------------------------------
 
     /**
@@ -76,9 +92,6 @@ public class ResponseService {
         } catch (IOException exception) {
             log.error("Error occurred while referring to new file PATH..", exception);
             return ResponseEntity.internalServerError().body(Utility.constructJsonResponse("error-msg", "File path referred to in DB is wrong or the file does not exist in that location"));
-        } catch (ParseException exception) {
-            log.error("Error occurred while parsing contents of block file to JSON", exception);
-            return ResponseEntity.internalServerError().body(Utility.constructJsonResponse("error-msg", "Error while parsing Block data"));
         }
     }
 
@@ -91,11 +104,11 @@ public class ResponseService {
         try {
             return ResponseEntity.ok(blockService.fetchBlockContentByHeight(Integer.parseInt(height)));
         } catch (FileNotFoundException exception) {
-            log.error("Invalid height specified... Unable to find {}", "\\blk" + String.format("%010d", Integer.parseInt(height) + 1) + ".dat", exception);
+            log.error("Invalid height specified... Unable to find block {}", height, exception);
             return ResponseEntity.badRequest().body(Utility.constructJsonResponse("msg", "Block with height " + height + " was not found"));
-        } catch (ParseException exception) {
-            log.error("error while parsing contents in file " + BLOCKCHAIN_STORAGE_PATH + "\\blk" + String.format("%010d", Integer.parseInt(height) + 1) + ".dat to JSON", exception);
-            return ResponseEntity.internalServerError().body(Utility.constructJsonResponse("msg", "Couldn't Parse block contents to JSON..."));
+        } catch (IOException exception) {
+            log.error("Error occurred while reading block {} from the block files in {}", height, BLOCKCHAIN_STORAGE_PATH, exception);
+            return ResponseEntity.internalServerError().body(Utility.constructJsonResponse("msg", "Error while reading the block from the block files..."));
         }
     }
 
@@ -107,6 +120,8 @@ public class ResponseService {
      */
     public ResponseEntity<Object> createGenesisBlock(String walletName) {
         log.info("-------------- START CreateGenesisBlock [GET] API --------------");
+        if (config.getQueryOnly())
+            return queryOnlyResponse();
         File base = new File(BLOCKCHAIN_STORAGE_PATH);
         if (base.isDirectory())
             log.info("The directory \"blockchain\" found... \nAdding blocks...");
@@ -131,13 +146,13 @@ public class ResponseService {
         }
 
         try {
-            Block genesis;
+            String genesis;
             try {
-                genesis = blockService.mineGenesisBlock(walletName);
+                genesis = blockService.saveBlock(blockService.mineGenesisBlock(walletName));
             } catch (MyCustomException exception) {
                 return ResponseEntity.internalServerError().body(exception.getMessageAsJSONString());
             }
-            return ResponseEntity.ok(new JSONParser().parse(blockService.saveBlock(genesis, "blk" + String.format("%010d", genesis.getHeight() + 1))));
+            return ResponseEntity.ok(new JSONParser().parse(genesis));
         } catch (ParseException exception) {
             log.error("Error while constructing response for createGenesisBlock()...", exception);
         }
@@ -146,6 +161,8 @@ public class ResponseService {
 
     public ResponseEntity<Object> mineBlock(String walletName) {
         log.info("-------------- START MineBlock [GET] API --------------");
+        if (config.getQueryOnly())
+            return queryOnlyResponse();
         // check for if genesis block exists
         List<String> files = Utility.listFilesInDirectory(BLOCKCHAIN_STORAGE_PATH, ".dat");
         if (ObjectUtils.isEmpty(files)) {
@@ -153,13 +170,13 @@ public class ResponseService {
         }
 
         try {
-            Block block;
+            String block;
             try {
-                block = blockService.mineBlock(walletName);
+                block = blockService.saveBlock(blockService.mineBlock(walletName));
             } catch (MyCustomException exception) {
                 return ResponseEntity.internalServerError().body(exception.getMessageAsJSONString());
             }
-            return ResponseEntity.ok(new JSONParser().parse(blockService.saveBlock(block, "blk" + String.format("%010d", block.getHeight() + 1))));
+            return ResponseEntity.ok(new JSONParser().parse(block));
         } catch (ParseException exception) {
             log.error("Error while constructing response for mineBlock()...", exception);
         }
@@ -175,6 +192,8 @@ public class ResponseService {
      */
     public ResponseEntity<Object> createWallet(CreateWalletRequestDto request) {
         log.info("-------------- START CreateWallet [POST] API --------------");
+        if (config.getQueryOnly())
+            return queryOnlyResponse();
 
         // validation
         if (Strings.isEmpty(request.getWalletName())) {
@@ -229,6 +248,9 @@ public class ResponseService {
      */
     @PostConstruct
     private void createDefaultWallet() {
+        // the wallets are those of the primary node
+        if (config.getQueryOnly())
+            return;
         String walletName = config.getDefaultWalletName();
         String keyName = config.getDefaultKeyName();
 
@@ -271,32 +293,20 @@ public class ResponseService {
         response.setHash160(info.getHash160());
 
         // calculate balance from AccountDB
+        List<UTXODto> UTXOs;
+        try {
+            UTXOs = transactionService.fetchUTXOs(List.of(info.getAddress()), TRANSACTIONS).get(info.getAddress());
+        } catch (JsonProcessingException | IllegalArgumentException exception) {
+            log.error("Error while parsing data in Transaction DB to an object of class <Transaction>", exception);
+            return ResponseEntity.internalServerError().body(Utility.constructJsonResponse("msg", "Couldn't parse transaction data(String) to Object<Transaction>..."));
+        } catch (MyCustomException exception) {
+            return ResponseEntity.internalServerError().body(exception.getMessageAsJSONString());
+        }
 
-        String transactions = rocksDB.find(info.getAddress(), ACCOUNTS);
-        if (transactions.equals("EMPTY"))
+        if (CollectionUtils.isEmpty(UTXOs))
             response.setBalance(new BigDecimal("0.0"));
         else {
-            log.info(Utility.beautify(transactions));
-
-            JSONObject transactionsJSON;
-            try {
-                transactionsJSON = new ObjectMapper().readValue(transactions, JSONObject.class);
-            } catch (JsonProcessingException | IllegalArgumentException exception) {
-                log.error("En error occurred when paring JSON", exception);
-                return ResponseEntity.internalServerError().body(Utility.constructJsonResponse("msg", "Error while Parsing UTXO data from Accounts DB to JSON..."));
-            }
-
             BigDecimal sum = new BigDecimal("0.0");
-            List<UTXODto> UTXOs;
-            try {
-                UTXOs = transactionService.retrieveAllUTXOs(transactionsJSON, TRANSACTIONS);
-            } catch (JsonProcessingException | IllegalArgumentException exception) {
-                log.error("Error while parsing data in Transaction DB to an object of class <Transaction>", exception);
-                return ResponseEntity.internalServerError().body(Utility.constructJsonResponse("msg", "Couldn't parse transaction data(String) to Object<Transaction>..."));
-            } catch (MyCustomException exception) {
-                return ResponseEntity.internalServerError().body(exception.getMessageAsJSONString());
-            }
-
             for (UTXODto utxo : UTXOs)
                 sum = sum.add(utxo.getAmount());
             response.setBalance(sum);
@@ -379,12 +389,6 @@ public class ResponseService {
         List<UTXODto> UTXOs;
         WalletUTXOResponseDto response;
         try {
-            String transactions = rocksDB.find(address, ACCOUNTS);
-
-            if (Strings.isEmpty(transactions) || transactions.equals("EMPTY")) {
-                log.error(String.format("No transaction(s) found with address: %s", address));
-                return ResponseEntity.badRequest().body(Utility.constructJsonResponse("msg", String.format("No transaction(s) found with address: %s", address)));
-            }
             DbName dbName = null;
             for (DbName name : DbName.class.getEnumConstants())
                 if (db.equalsIgnoreCase(name.toString()))
@@ -396,7 +400,7 @@ public class ResponseService {
                 return ResponseEntity.badRequest().body(Utility.constructJsonResponse("msg", "Enter valid DB name"));
 
             try {
-                UTXOs = transactionService.retrieveAllUTXOs(new ObjectMapper().readValue(transactions, JSONObject.class), dbName);
+                UTXOs = transactionService.fetchUTXOs(List.of(address), dbName).get(address);
             } catch (JsonProcessingException | IllegalArgumentException exception) {
                 log.error("Error while casting UTXO info to JSONObject from AccountsDB...", exception);
                 return ResponseEntity.internalServerError().body(Utility.constructJsonResponse("err", "Error while casting UTXO info to JSONObject from AccountsDB..."));
@@ -404,6 +408,11 @@ public class ResponseService {
                 return ResponseEntity.internalServerError().body(exception.getMessageAsJSONString());
             }
 
+            if (CollectionUtils.isEmpty(UTXOs)) {
+                log.error(String.format("No transaction(s) found with address: %s", address));
+                return ResponseEntity.badRequest().body(Utility.constructJsonResponse("msg", String.format("No transaction(s) found with address: %s", address)));
+            }
+
             for (UTXODto utxo : UTXOs)
                 sum = sum.add(utxo.getAmount());
             response = WalletUTXOResponseDto.builder()
@@ -475,6 +484,8 @@ public class ResponseService {
      */
     public ResponseEntity<Object> makeTransaction(MakeTransactionDto requestDto) {
         log.info("-------------- START MakeTransaction [POST] API --------------");
+        if (config.getQueryOnly())
+            return queryOnlyResponse();
         // validation for To Address
         if (Strings.isEmpty(requestDto.getTo())) {
             log.error("The field \"To\" cannot be empty");
@@ -534,10 +545,39 @@ public class ResponseService {
         return count;
     }
 
+    public ResponseEntity<Object> getStorageSize() {
+        log.info("-------------- START GetStorageSize [GET] API --------------");
+        JSONObject response = new JSONObject();
+        if (maintenance == null)
+            return ResponseEntity.ok(response);
+        maintenance.storageReport().forEach((db, sizes) -> response.put(db.toString(), new JSONObject(sizes)));
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Creates a checkpoint of the DBs and block files from which another node can be started
+     *
+     * @return Response Object holding the folder of the checkpoint
+     */
+    public ResponseEntity<Object> createCheckpoint() {
+        log.info("-------------- START CreateCheckpoint [POST] API --------------");
+        if (config.getQueryOnly())
+            return queryOnlyResponse();
+        if (checkpointService == null)
+            return ResponseEntity.badRequest().body(new MyCustomException("Checkpoints are not supported by the in-memory repository").getMessageAsJSONString());
+        JSONObject response = new JSONObject();
+        try {
+            response.put("checkpoint", checkpointService.createCheckpoint().toString());
+        } catch (MyCustomException exception) {
+            return ResponseEntity.internalServerError().body(exception.getMessageAsJSONString());
+        }
+        return ResponseEntity.ok(response);
+    }
+
     // ----------------------------------------------------------------------------------------------------------------------------------
 
     /**
-     * <b>Deletes</b> any value from any of the DBs available by its key
+     * <b>Deletes</b> any value from any of the DBs available by its key; Deleting a block from Blockchain DB deletes its header as well
      *
      * @param key Can be any key that points to a specific value in a given DB
      * @param db  The Name of the DB
@@ -545,11 +585,28 @@ public class ResponseService {
      */
     public ResponseEntity<Object> delete(String key, String db) {
         log.info("-------------- START Delete [DELETE] API --------------");
+        if (config.getQueryOnly())
+            return queryOnlyResponse();
         // get DbName ENUM
         for (DbName name : DbName.class.getEnumConstants())
             if (db.equalsIgnoreCase(name.toString()))
-                if (!rocksDB.delete(key, name))
+                if (!(name == BLOCKCHAIN ? deleteBlock(key) : rocksDB.delete(key, name)))
                     return ResponseEntity.badRequest().build();
         return ResponseEntity.ok().build();
     }
+
+    // a block is saved under its hash in Blockchain DB and Block Headers DB in one batch (see BlockService#saveBlock), and deleted from both the same way
+    private boolean deleteBlock(String hash) {
+        try {
+            ByteCodec.keyOf(BLOCKCHAIN).encode(hash);
+        } catch (IllegalArgumentException e) {
+            log.error("{} is not a valid block hash", hash);
+            return false;
+        }
+        try (KeyValueBatch<String, String> batch = rocksDB.beginBatch()) {
+            batch.delete(hash, BLOCKCHAIN);
+            batch.delete(hash, BLOCK_HEADERS);
+            return batch.commit();
+        }
+    }
 }
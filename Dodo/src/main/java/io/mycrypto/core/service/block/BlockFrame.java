@@ -0,0 +1,68 @@
+package io.mycrypto.core.service.block;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.mycrypto.core.entity.Block;
+import io.mycrypto.core.repository.RecordCodec;
+import lombok.extern.slf4j.Slf4j;
+import org.json.simple.JSONObject;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * Frame a block is stored in within the block files: the magic bytes f9beb4d9 (as in Bitcoin), the length of the payload
+ * as a 4 byte big-endian int, then the payload, the block encoded by {@link RecordCodec}. <br>
+ * Frames written before holding the JSON of the block, and blocks stored as "f9beb4d9" + Base64 of their JSON through
+ * DataOutputStream#writeUTF (which fails for records over 64 KB), are still read
+ */
+@Slf4j
+final class BlockFrame {
+    static final int MAGIC = 0xf9beb4d9;
+    static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES;
+    private static final String LEGACY_MAGIC = "f9beb4d9";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private BlockFrame() {
+    }
+
+    static byte[] frame(Block block) throws IOException {
+        byte[] payload = RecordCodec.encode(block);
+        return ByteBuffer.allocate(HEADER_SIZE + payload.length).putInt(MAGIC).putInt(payload.length).put(payload).array();
+    }
+
+    /**
+     * @param record           The frame, from its position up to its limit; Usually a slice of a mapping of a block file, which is decoded in place
+     * @param withTransactions false to decode only the header of the block
+     */
+    static Block read(ByteBuffer record, boolean withTransactions) throws IOException {
+        // a record written through writeUTF starts with its length followed by the characters "f9", never with the magic bytes
+        if (record.remaining() < HEADER_SIZE || record.getInt(record.position()) != MAGIC)
+            return readLegacy(record, withTransactions);
+
+        int length = record.getInt(record.position() + Integer.BYTES);
+        if (length < 0 || length > record.remaining() - HEADER_SIZE)
+            throw new EOFException(String.format("Block frame of %d bytes holds %d bytes of payload", record.remaining(), length));
+        return RecordCodec.decodeBlock(record.slice(record.position() + HEADER_SIZE, length), withTransactions);
+    }
+
+    /**
+     * @return The block as it is returned by the REST API
+     */
+    static JSONObject parse(ByteBuffer record, boolean withTransactions) throws IOException {
+        return MAPPER.convertValue(read(record, withTransactions), JSONObject.class);
+    }
+
+    private static Block readLegacy(ByteBuffer buffer, boolean withTransactions) throws IOException {
+        byte[] record = new byte[buffer.remaining()];
+        buffer.duplicate().get(record);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        StringBuilder result = new StringBuilder();
+        while (in.available() > 0)
+            result.append(in.readUTF());
+        if (!result.toString().startsWith(LEGACY_MAGIC))
+            throw new IOException("Record is neither a block frame nor a block written through writeUTF");
+        log.debug("Block content in Base64 ==> {}", result);
+        return RecordCodec.decodeBlock(ByteBuffer.wrap(Base64.getDecoder().decode(result.substring(LEGACY_MAGIC.length()))), withTransactions);
+    }
+}
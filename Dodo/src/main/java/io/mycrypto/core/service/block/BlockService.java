@@ -7,22 +7,22 @@ import io.mycrypto.core.dto.WalletInfoDto;
 import io.mycrypto.core.entity.Block;
 import io.mycrypto.core.entity.Transaction;
 import io.mycrypto.core.exception.MyCustomException;
+import io.mycrypto.core.repository.ByteCodec;
+import io.mycrypto.core.repository.KeyValueBatch;
 import io.mycrypto.core.repository.KeyValueRepository;
+import io.mycrypto.core.repository.RecordCodec;
 import io.mycrypto.core.service.transaction.TransactionService;
 import io.mycrypto.core.util.Utility;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.SystemUtils;
 import org.apache.logging.log4j.util.Strings;
 import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
 import java.math.BigInteger;
 import java.util.ArrayList;
-import java.util.Base64;
 import java.util.List;
 
 import static io.mycrypto.core.repository.DbName.*;
@@ -30,23 +30,27 @@ import static io.mycrypto.core.repository.DbName.*;
 @Slf4j
 @Service
 public class BlockService {
-    private static final String MAGIC_BYTES = "f9beb4d9"; // help you spot when a new message starts when sending or receiving a continuous stream of data
     private static final String OUTER_RESOURCE_FOLDER = "RESOURCES";
     private static final String FOLDER_TO_STORE_BLOCKS = "blockchain";
-    private static final String BLOCKCHAIN_STORAGE_PATH;
+    public static final String BLOCKCHAIN_STORAGE_PATH;
 
     static {
         BLOCKCHAIN_STORAGE_PATH = SystemUtils.USER_DIR + Utility.osAppender() + OUTER_RESOURCE_FOLDER + Utility.osAppender() + FOLDER_TO_STORE_BLOCKS + Utility.osAppender();
     }
 
     @Autowired
-    private KeyValueRepository<String, String> rocksDB;
+    private KeyValueRepository<byte[], byte[]> rocksDB;
     @Autowired
     private TransactionService transactionService;
+    @Autowired
+    private BlockStorage blockStorage;
+
+    // hash of the latest block saved by this node, whose header mining the next block starts from
+    private volatile String latestBlockHash;
 
     public Block mineBlock(String walletName) throws MyCustomException {
         // get transactions from Transactions Pool
-        List<Transaction> transactions = transactionService.retrieveAndDeleteTransactionsFromTransactionsPool(); // also checks for if there exists enough transactions within the Transactions Pool to create a Block (throws exception if requirements are not met)
+        List<Transaction> transactions = transactionService.retrieveTransactionsFromTransactionsPool(); // also checks for if there exists enough transactions within the Transactions Pool to create a Block (throws exception if requirements are not met)
 
         Block block = new Block();
 
@@ -55,16 +59,13 @@ public class BlockService {
         long previousBlockHeight = 0;
         try {
             previousBlockHeight = rocksDB.getCount(BLOCKCHAIN) - 1;
-            previousBlock = new ObjectMapper().readValue(fetchBlockContentByHeight((int) previousBlockHeight).toJSONString(), Block.class);
+            previousBlock = fetchBlockHeader(previousBlockHeight);
         } catch (FileNotFoundException exception) {
             log.error("An unexpected error occurred", exception);
             throw new MyCustomException(String.format("Did not find file storing Block Information for Block with height: %s", previousBlockHeight));
-        } catch (ParseException exception) {
-            log.error("An unexpected error occurred", exception);
-            throw new MyCustomException("Error while parsing contents of previous Block from File to JSON");
-        } catch (JsonProcessingException exception) {
+        } catch (IOException exception) {
             log.error("An unexpected error occurred", exception);
-            throw new MyCustomException("Error while parsing contents of previous Block from JsonString to <Block.class>");
+            throw new MyCustomException(String.format("Error while reading Block Information for Block with height: %s", previousBlockHeight));
         }
         block.setPreviousHash(previousBlock.getHash());
         block.setHeight(previousBlockHeight + 1);
@@ -74,7 +75,7 @@ public class BlockService {
         // fetching wallet info to get dodo-coin address
         WalletInfoDto info;
         try {
-            String walletInfo = rocksDB.find(Strings.isEmpty(walletName) ? "default" : walletName, WALLETS);
+            String walletInfo = ByteCodec.UTF8.decode(rocksDB.find(ByteCodec.UTF8.encode(Strings.isEmpty(walletName) ? "default" : walletName), WALLETS));
             if (Strings.isEmpty(walletInfo)) {
                 if (Strings.isEmpty(walletName)) {
                     log.error("Wallet >> default << NOT FOUND...");
@@ -91,22 +92,30 @@ public class BlockService {
             throw e;
         }
 
-        // creating coinbase transaction
-        Transaction coinbase = transactionService.constructCoinbaseTransaction(info, false, transactions);
-        transactions.add(0, coinbase);
-        block.setTransactions(transactions);
+        // all DB writes made while mining (moving transactions out of the pool, coinbase, UTXO bookkeeping) are applied together
+        try (KeyValueBatch<byte[], byte[]> batch = rocksDB.beginBatch()) {
+            transactionService.deleteTransactionsFromTransactionsPool(transactions, batch);
 
-        List<String> transactionIds = new ArrayList<>();
-        for (Transaction tx : transactions)
-            transactionIds.add(tx.getTransactionId());
+            // creating coinbase transaction
+            Transaction coinbase = transactionService.constructCoinbaseTransaction(info, false, transactions, batch);
+            transactions.add(0, coinbase);
+            block.setTransactions(transactions);
 
-        block.setTransactionIds(transactionIds);
-        block.setMerkleRoot(Utility.constructMerkleTree(new ArrayList<>(transactionIds)));
-        block.setNumTx(transactionIds.size());
-        log.info("Hash of genesis block ==> {}", block.calculateHash());
-        log.info("mining the genesis block...");
+            List<String> transactionIds = new ArrayList<>();
+            for (Transaction tx : transactions)
+                transactionIds.add(tx.getTransactionId());
+
+            block.setTransactionIds(transactionIds);
+            block.setMerkleRoot(Utility.constructMerkleTree(new ArrayList<>(transactionIds)));
+            block.setNumTx(transactionIds.size());
+            log.info("Hash of genesis block ==> {}", block.calculateHash());
+            log.info("mining the genesis block...");
+
+            block.mineBlock(info.getAddress());
 
-        block.mineBlock(info.getAddress());
+            if (!batch.commit())
+                throw new MyCustomException("Error while saving the transactions of the mined block...");
+        }
 
         return block;
     }
@@ -126,7 +135,7 @@ public class BlockService {
         // fetching wallet info to get dodo-coin address
         WalletInfoDto info;
         try {
-            String walletInfo = rocksDB.find(Strings.isEmpty(walletName) ? "default" : walletName, WALLETS);
+            String walletInfo = ByteCodec.UTF8.decode(rocksDB.find(ByteCodec.UTF8.encode(Strings.isEmpty(walletName) ? "default" : walletName), WALLETS));
             if (Strings.isEmpty(walletInfo))
                 throw new MyCustomException("Wallet not found");
             info = new ObjectMapper().readValue(walletInfo, WalletInfoDto.class);
@@ -139,7 +148,12 @@ public class BlockService {
         }
 
         // creating coinbase transaction
-        Transaction coinbase = transactionService.constructCoinbaseTransaction(info, true, new ArrayList<>());
+        Transaction coinbase;
+        try (KeyValueBatch<byte[], byte[]> batch = rocksDB.beginBatch()) {
+            coinbase = transactionService.constructCoinbaseTransaction(info, true, new ArrayList<>(), batch);
+            if (!batch.commit())
+                throw new MyCustomException("Error while saving the coinbase transaction of the genesis block...");
+        }
 
         genesis.setTransactions(List.of(coinbase));
         List<String> transactionIds = new ArrayList<>();
@@ -156,11 +170,11 @@ public class BlockService {
     }
 
     /**
-     * @param blk           Block Info in the format <Block.class>
-     * @param blockFileName The path on your system here the block is stored as a .dat file in hex
+     * @param blk Block Info in the format <Block.class>; Appended to the block files (see {@link BlockStorage})
      * @return JSON String of the block info
+     * @throws MyCustomException if the block could not be written to the block files or saved to the DBs
      */
-    public String saveBlock(Block blk, String blockFileName) {
+    public String saveBlock(Block blk) throws MyCustomException {
         String json = null;
         try {
             ObjectWriter ow = new ObjectMapper().writer().withDefaultPrettyPrinter();
@@ -168,22 +182,33 @@ public class BlockService {
             blk.setSize(new BigInteger(String.valueOf(json.replace(" ", "").length() - "\"size\":null\\\"weight\\\": null\"".length())));
             blk.setWeight(new BigInteger("4").multiply(blk.getSize()));
             json = ow.writeValueAsString(blk);
-            log.info("{} ==> \n{}", blockFileName + ".dat", json);
+            log.info("Block {} ==> \n{}", blk.getHeight(), json);
         } catch (JsonProcessingException ex) {
             log.error("Error occurred while parsing Object(Block) to json \nexception: {}, message: {}, stackTrace: {}", ex.getCause(), ex.getMessage(), ex.getStackTrace());
             return json;
         }
 
-        rocksDB.save(blk.getHash(), BLOCKCHAIN_STORAGE_PATH + blockFileName + ".dat", BLOCKCHAIN);
-
+        // the block is written before it is saved to the DB so that an entry in Blockchain DB (or a checkpoint of it) never points to a missing block
+        BlockStorage.BlockLocation location;
+        byte[] header;
         try {
-            DataOutputStream out = new DataOutputStream(new FileOutputStream(BLOCKCHAIN_STORAGE_PATH + blockFileName + ".dat"));
-            out.writeUTF(MAGIC_BYTES + Base64.getEncoder().withoutPadding().encodeToString(json.getBytes()));
-            out.close();
-        } catch (FileNotFoundException exception) {
-            log.error("Error occurred while creating {} at location {} ", blockFileName, BLOCKCHAIN_STORAGE_PATH, exception);
+            header = RecordCodec.encodeHeader(blk);
+            location = blockStorage.append(blk.getHeight(), BlockFrame.frame(blk));
         } catch (IOException exception) {
-            log.error("Error occurred while creating DataOutputStream", exception);
+            log.error("Error occurred while writing block {} to the block files at location {}", blk.getHeight(), BLOCKCHAIN_STORAGE_PATH, exception);
+            throw new MyCustomException(String.format("Error while writing block %d to the block files...", blk.getHeight()));
+        }
+
+        // the location and the header of the block are saved together
+        try (KeyValueBatch<byte[], byte[]> batch = rocksDB.beginBatch()) {
+            byte[] key = ByteCodec.HEX.encode(blk.getHash());
+            batch.save(key, ByteCodec.UTF8.encode(location.encode()), BLOCKCHAIN);
+            batch.save(key, header, BLOCK_HEADERS);
+            if (!batch.commit()) {
+                log.error("Error occurred while saving block {} to Blockchain DB", blk.getHeight());
+                throw new MyCustomException(String.format("Error while saving block %d to Blockchain DB...", blk.getHeight()));
+            }
+            latestBlockHash = blk.getHash();
         }
 
         return json;
@@ -195,45 +220,61 @@ public class BlockService {
      * @param hash The hash of the Block
      * @return JSONObject
      */
-    public JSONObject fetchBlockContent(String hash) throws NullPointerException, IOException, ParseException {
-        String path = rocksDB.find(hash, BLOCKCHAIN);
-        log.debug("File PATH for {} ==> {}", hash, path);
-        DataInputStream in = new DataInputStream(new FileInputStream(path));
-        boolean eof = false;
-        StringBuilder result = new StringBuilder();
-        while (!eof) {
-            try {
-                result.append(in.readUTF());
-            } catch (EOFException ex) {
-                log.warn("End of file reached...");
-                eof = true;
-            }
-        }
-        log.info("File content in HEX ==> {}", result);
-        JSONObject response = (JSONObject) new JSONParser().parse(new String(Base64.getDecoder().decode(result.substring(MAGIC_BYTES.length()))));
+    public JSONObject fetchBlockContent(String hash) throws NullPointerException, IOException {
+        Block header = fetchBlockHeader(hash);
+        if (header == null)
+            throw new NullPointerException();
+        JSONObject response = new ObjectMapper().convertValue(header, JSONObject.class);
         response.remove("transactions");
         return response;
     }
 
+    /**
+     * Fetches the header of a Block (every field but its transactions) from Block-Headers DB, without reading the block files
+     *
+     * @param hash The hash of the Block
+     * @return null if there is no Block with that hash
+     */
+    public Block fetchBlockHeader(String hash) throws IOException {
+        byte[] key;
+        try {
+            key = ByteCodec.HEX.encode(hash);
+        } catch (IllegalArgumentException exception) {
+            log.error("{} is not a valid block hash", hash);
+            return null;
+        }
+        byte[] header = rocksDB.find(key, BLOCK_HEADERS);
+        if (header != null)
+            return RecordCodec.decodeHeader(header);
+
+        // a block saved before headers were stored on their own, whose header has not been stored yet (see BlockStorage)
+        String entry = ByteCodec.UTF8.decode(rocksDB.find(key, BLOCKCHAIN));
+        log.debug("Location of {} ==> {}", hash, entry);
+        return entry == null ? null : BlockFrame.read(blockStorage.read(entry), false);
+    }
+
+    /**
+     * Fetches the header of the Block of a height from Block-Headers DB when it is the latest block saved by this node;
+     * Otherwise (e.g. the first block mined since startup) the header is decoded from the block files
+     *
+     * @param height The height of the Block
+     * @throws FileNotFoundException if no block of that height is stored
+     */
+    Block fetchBlockHeader(long height) throws IOException {
+        String hash = latestBlockHash;
+        Block header = hash == null ? null : fetchBlockHeader(hash);
+        if (header != null && header.getHeight() == height)
+            return header;
+        return BlockFrame.read(blockStorage.read(blockStorage.locate(height)), false);
+    }
+
     /**
      * Fetches Block Information by its Height
      *
      * @param height The height of the Block
      * @return JSONObject
      */
-    public JSONObject fetchBlockContentByHeight(int height) throws FileNotFoundException, ParseException {
-        DataInputStream in = new DataInputStream(new FileInputStream(BLOCKCHAIN_STORAGE_PATH + "blk" + String.format("%010d", height + 1) + ".dat"));
-        boolean eof = false;
-        StringBuilder result = new StringBuilder();
-        while (!eof) {
-            try {
-                result.append(in.readUTF());
-            } catch (IOException ex) {
-                log.warn("End of file reached...");
-                eof = true;
-            }
-        }
-        log.info("File content in HEX ==> {}", result);
-        return (JSONObject) new JSONParser().parse(new String(Base64.getDecoder().decode(result.substring(MAGIC_BYTES.length()))));
+    public JSONObject fetchBlockContentByHeight(int height) throws IOException {
+        return BlockFrame.parse(blockStorage.read(blockStorage.locate(height)), true);
     }
 }
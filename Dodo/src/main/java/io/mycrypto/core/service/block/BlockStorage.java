@@ -0,0 +1,331 @@
+package io.mycrypto.core.service.block;
+
+import io.mycrypto.core.config.DodoCommonConfig;
+import io.mycrypto.core.entity.Block;
+import io.mycrypto.core.repository.ByteCodec;
+import io.mycrypto.core.repository.KeyValueRepository;
+import io.mycrypto.core.repository.RecordCodec;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static io.mycrypto.core.repository.DbName.BLOCKCHAIN;
+import static io.mycrypto.core.repository.DbName.BLOCK_HEADERS;
+
+/**
+ * Stores blocks in append-only segment files (blk00000.dat, blk00001.dat, ...) as Bitcoin does, in place of one file per block;
+ * A segment is appended to until it would grow past BLOCK_FILE_MAX_SIZE_MB, after which the next one is started. <br>
+ * Blockchain DB maps the hash of a block to its {@link BlockLocation}, and heights.idx holds the location of the block of every height (16 bytes per height). <br>
+ * Blocks are read through read-only mappings of the segments, so a block is decoded in place without being copied onto the heap;
+ * Only the BLOCK_FILE_MAPPED_SEGMENTS segments read most recently stay mapped
+ */
+@Slf4j
+@Component
+public class BlockStorage {
+    private static final String SEGMENT_FORMAT = "blk%05d.dat";
+    private static final Pattern SEGMENT = Pattern.compile("blk(\\d{5})\\.dat");
+    private static final Pattern LEGACY_BLOCK_FILE = Pattern.compile("blk\\d{10}\\.dat"); // one file per block, named after its height + 1
+    private static final String HEIGHT_INDEX = "heights.idx";
+    private static final int INDEX_ENTRY_SIZE = Integer.BYTES + Long.BYTES + Integer.BYTES;
+    private static final long MB = 1024L * 1024;
+
+    @Autowired
+    private KeyValueRepository<byte[], byte[]> rocksDB;
+    @Autowired
+    private DodoCommonConfig config;
+
+    private final Path folder;
+    // mappings of the segments read most recently, dropped (and unmapped once collected) beyond BLOCK_FILE_MAPPED_SEGMENTS
+    private final Map<Integer, MappedByteBuffer> mappings = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, MappedByteBuffer> eldest) {
+            return size() > config.getBlockFileMappedSegments();
+        }
+    };
+    private FileChannel writer; // the segment appended to; opened along with the first block written
+    private FileChannel index; // read by query-only nodes too
+    private int segment;
+    private long position;
+
+    public BlockStorage() {
+        this(Path.of(BlockService.BLOCKCHAIN_STORAGE_PATH));
+    }
+
+    // block files kept elsewhere than in the block folder of the node (e.g. by tests)
+    BlockStorage(Path folder) {
+        this.folder = folder;
+    }
+
+    /**
+     * Where a block is stored; Saved in Blockchain DB as "file:offset:length"
+     *
+     * @param file   Number of the segment
+     * @param offset Position of the block in the segment
+     * @param length Size of the block in bytes
+     */
+    public record BlockLocation(int file, long offset, int length) {
+        public String encode() {
+            return file + ":" + offset + ":" + length;
+        }
+
+        public static BlockLocation decode(String value) {
+            String[] parts = value.split(":");
+            if (parts.length != 3)
+                throw new IllegalArgumentException(String.format("%s is not a block location", value));
+            return new BlockLocation(Integer.parseInt(parts[0]), Long.parseLong(parts[1]), Integer.parseInt(parts[2]));
+        }
+    }
+
+    @PostConstruct
+    void initialize() {
+        // blocks are appended to the last segment
+        try (Stream<Path> files = Files.list(folder)) {
+            segment = files.map(file -> SEGMENT.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .mapToInt(matcher -> Integer.parseInt(matcher.group(1)))
+                    .max().orElse(0);
+        } catch (NoSuchFileException exception) {
+            log.info("No blocks stored yet");
+            return;
+        } catch (IOException exception) {
+            log.error("Error while listing the block files in {}", folder, exception);
+            return;
+        }
+        // the primary node moves the blocks
+        if (!config.getQueryOnly()) {
+            migrateLegacyFiles();
+            storeMissingHeaders();
+        }
+    }
+
+    @PreDestroy
+    synchronized void close() {
+        try {
+            if (writer != null)
+                writer.close();
+            if (index != null)
+                index.close();
+            synchronized (mappings) {
+                mappings.clear();
+            }
+        } catch (IOException exception) {
+            log.error("Error while closing the block files", exception);
+        }
+    }
+
+    /**
+     * Appends a block to the current segment and records its location as the block of the height; The segment and the index are synced
+     * before returning, so that Blockchain DB (which is written afterwards) never points to a block that is not on disk
+     *
+     * @param record The block as it is written to the file
+     */
+    public synchronized BlockLocation append(long height, byte[] record) throws IOException {
+        if (writer == null) {
+            Files.createDirectories(folder);
+            writer = FileChannel.open(folder.resolve(String.format(SEGMENT_FORMAT, segment)), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            position = writer.size();
+        }
+        // a block larger than a whole segment gets a segment of its own
+        if (position > 0 && position + record.length > config.getBlockFileMaxSizeMB() * MB) {
+            writer.close();
+            segment++;
+            writer = FileChannel.open(folder.resolve(String.format(SEGMENT_FORMAT, segment)), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            position = writer.size();
+            log.info("Started block file {}", String.format(SEGMENT_FORMAT, segment));
+        }
+
+        writeFully(writer, ByteBuffer.wrap(record), position);
+        writer.force(false);
+        BlockLocation location = new BlockLocation(segment, position, record.length);
+        position += record.length;
+
+        // written in place, so a block mined again at the same height (e.g. after a crash before it reached the DB) replaces the previous one
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE).putInt(location.file()).putLong(location.offset()).putInt(location.length()).flip();
+        writeFully(index(), entry, height * INDEX_ENTRY_SIZE);
+        index.force(false);
+        return location;
+    }
+
+    private synchronized FileChannel index() throws IOException {
+        if (index == null) {
+            if (config.getQueryOnly())
+                index = FileChannel.open(folder.resolve(HEIGHT_INDEX), StandardOpenOption.READ);
+            else {
+                Files.createDirectories(folder);
+                index = FileChannel.open(folder.resolve(HEIGHT_INDEX), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+        }
+        return index;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+    }
+
+    /**
+     * @throws FileNotFoundException if no block of that height is stored
+     */
+    public BlockLocation locate(long height) throws IOException {
+        if (height < 0 || !Files.isRegularFile(folder.resolve(HEIGHT_INDEX)) || (height + 1) * INDEX_ENTRY_SIZE > index().size())
+            throw new FileNotFoundException(String.format("No block of height %d is stored", height));
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+        readFully(index(), entry, height * INDEX_ENTRY_SIZE);
+        entry.flip();
+        BlockLocation location = new BlockLocation(entry.getInt(), entry.getLong(), entry.getInt());
+        // heights skipped by the index read as zeros
+        if (location.length() == 0)
+            throw new FileNotFoundException(String.format("No block of height %d is stored", height));
+        return location;
+    }
+
+    /**
+     * @return The block as a read-only slice of the mapping of its segment
+     */
+    public ByteBuffer read(BlockLocation location) throws IOException {
+        long end = location.offset() + location.length();
+        // a single mapping covers at most 2 GB, so blocks past that in a larger segment are mapped on their own
+        if (end > Integer.MAX_VALUE)
+            return map(location.file(), location.offset(), location.length());
+
+        MappedByteBuffer mapping;
+        synchronized (mappings) {
+            mapping = mappings.get(location.file());
+            // the segment being appended to is mapped again once blocks are read past the end of its mapping
+            if (mapping == null || mapping.capacity() < end) {
+                mapping = map(location.file(), 0, -1);
+                mappings.put(location.file(), mapping);
+            }
+        }
+        if (mapping.capacity() < end)
+            throw new EOFException(String.format("Block file %s ends before position %d", String.format(SEGMENT_FORMAT, location.file()), end));
+        return mapping.slice((int) location.offset(), location.length());
+    }
+
+    /**
+     * @param size Size of the region; -1 for the whole segment (up to 2 GB)
+     */
+    private MappedByteBuffer map(int file, long offset, long size) throws IOException {
+        Path path = folder.resolve(String.format(SEGMENT_FORMAT, file));
+        if (!Files.isRegularFile(path))
+            throw new FileNotFoundException(path.toString());
+        // the mapping stays valid once the channel is closed
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (size < 0)
+                size = Math.min(channel.size(), Integer.MAX_VALUE);
+            else if (offset + size > channel.size())
+                throw new EOFException(String.format("Block file %s ends before position %d", path.getFileName(), offset + size));
+            return channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+        }
+    }
+
+    /**
+     * @param entry Value of the block in Blockchain DB; Entries written before blocks were stored in segments hold the path of the file of the block
+     */
+    public ByteBuffer read(String entry) throws IOException {
+        // the file is looked up by its name in the local block folder as the DB may have been restored from a checkpoint taken elsewhere
+        if (entry.endsWith(".dat"))
+            return ByteBuffer.wrap(Files.readAllBytes(folder.resolve(Path.of(entry).getFileName())));
+        return read(BlockLocation.decode(entry));
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0)
+                throw new EOFException(String.format("Block file ends before position %d", position + buffer.limit()));
+        }
+    }
+
+    /**
+     * @return true for the files that are still written to (the current segment and the height index); Checkpoints copy them instead of linking them
+     */
+    public synchronized boolean isAppendedTo(Path file) {
+        String name = file.getFileName().toString();
+        return name.equals(HEIGHT_INDEX) || name.equals(String.format(SEGMENT_FORMAT, segment));
+    }
+
+    /**
+     * Moves the blocks stored one per file by earlier versions into segments (re-encoded) in the order of their height; Only blocks that Blockchain DB
+     * points to are moved, and each file is deleted once the DB points to the copy of its block, so an interrupted move is resumed on the next start
+     */
+    private void migrateLegacyFiles() {
+        File[] legacy = folder.toFile().listFiles((dir, name) -> LEGACY_BLOCK_FILE.matcher(name).matches());
+        if (legacy == null || legacy.length == 0)
+            return;
+        // named after their height
+        Arrays.sort(legacy);
+
+        int moved = 0;
+        for (File file : legacy) {
+            try {
+                byte[] record = Files.readAllBytes(file.toPath());
+                Block block = BlockFrame.read(ByteBuffer.wrap(record), true);
+                byte[] key = ByteCodec.HEX.encode(block.getHash());
+                byte[] stored = rocksDB.find(key, BLOCKCHAIN);
+                if (stored == null) {
+                    log.warn("{} holds a block that is not in Blockchain DB; it is left as it is", file.getName());
+                    continue;
+                }
+                if (ByteCodec.UTF8.decode(stored).endsWith(".dat")) {
+                    BlockLocation location = append(block.getHeight(), BlockFrame.frame(block));
+                    rocksDB.save(key, ByteCodec.UTF8.encode(location.encode()), BLOCKCHAIN);
+                }
+                Files.delete(file.toPath());
+                moved++;
+            } catch (IOException | RuntimeException exception) {
+                log.error("Error while moving {} into a block file; it is moved again on the next start", file.getName(), exception);
+            }
+        }
+        log.info("Moved {} of {} blocks stored one per file into block files", moved, legacy.length);
+    }
+
+    /**
+     * Stores the headers of the blocks saved before Block-Headers DB was introduced, read from the block files
+     */
+    private void storeMissingHeaders() {
+        if (rocksDB.getCount(BLOCK_HEADERS) >= rocksDB.getCount(BLOCKCHAIN))
+            return;
+        List<byte[]> keys = new ArrayList<>();
+        List<byte[]> locations = new ArrayList<>();
+        rocksDB.scan(BLOCKCHAIN, null, 0, (key, value) -> {
+            keys.add(key);
+            locations.add(value);
+            return true;
+        });
+        List<byte[]> headers = rocksDB.multiFind(keys, BLOCK_HEADERS);
+
+        int stored = 0;
+        for (int i = 0; i < keys.size(); i++) {
+            if (headers.get(i) != null)
+                continue;
+            try {
+                Block header = BlockFrame.read(read(ByteCodec.UTF8.decode(locations.get(i))), false);
+                rocksDB.save(keys.get(i), RecordCodec.encodeHeader(header), BLOCK_HEADERS);
+                stored++;
+            } catch (IOException | RuntimeException exception) {
+                log.error("Error while storing the header of block {}; it is stored on the next start", ByteCodec.HEX.decode(keys.get(i)), exception);
+            }
+        }
+        log.info("Stored the headers of {} blocks in Block-Headers DB", stored);
+    }
+}
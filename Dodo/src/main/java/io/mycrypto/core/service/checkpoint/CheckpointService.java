@@ -0,0 +1,136 @@
+package io.mycrypto.core.service.checkpoint;
+
+import io.mycrypto.core.config.DodoCommonConfig;
+import io.mycrypto.core.exception.MyCustomException;
+import io.mycrypto.core.repository.InMemoryKeyValueRepository;
+import io.mycrypto.core.repository.RocksDBRepositoryImpl;
+import io.mycrypto.core.service.block.BlockService;
+import io.mycrypto.core.service.block.BlockStorage;
+import io.mycrypto.core.util.Utility;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.rocksdb.RocksDBException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+
+/**
+ * Checkpoints from which new nodes can be brought up in place of replaying the chain from genesis;
+ * A checkpoint holds a RocksDB checkpoint of all the DBs (under RocksDB/) and the block files (under blockchain/). <br>
+ * The key files of the wallets (under KEYS/) hold their private keys and are only added with CHECKPOINT_INCLUDE_KEYS set;
+ * Restoring them never overwrites the keys of the node
+ */
+@Slf4j
+@Service
+@Profile("!" + InMemoryKeyValueRepository.PROFILE)
+public class CheckpointService {
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final String KEYS_FOLDER = "KEYS";
+    // folder in the checkpoint ==> folder of the node
+    private static final Map<String, String> FOLDERS = Map.of(
+            "blockchain", BlockService.BLOCKCHAIN_STORAGE_PATH
+    );
+    private static final Map<String, String> FOLDERS_WITH_KEYS = Map.of(
+            "blockchain", BlockService.BLOCKCHAIN_STORAGE_PATH,
+            KEYS_FOLDER, Utility.LOCATION_TO_STORE_KEY
+    );
+
+    @Autowired
+    private RocksDBRepositoryImpl repository;
+
+    @Autowired
+    private DodoCommonConfig config;
+
+    @Autowired
+    private BlockStorage blockStorage;
+
+    /**
+     * Takes a checkpoint of the DBs and hard links the block files (and the key files if CHECKPOINT_INCLUDE_KEYS is set) into it;
+     * Blocks are written before they are saved to the DB, so every block in the checkpoint is in its files.
+     * The block file still being appended to and the height index are copied, as later writes to them would show through a link
+     *
+     * @return The folder of the checkpoint; Start a node with RESTORE_FROM_CHECKPOINT set to it to restore from it
+     */
+    public Path createCheckpoint() throws MyCustomException {
+        Path root;
+        try {
+            root = repository.createCheckpoint("checkpoint-" + LocalDateTime.now().format(NAME_FORMAT));
+        } catch (RocksDBException | IOException exception) {
+            log.error("Error while creating a checkpoint of the DB", exception);
+            throw new MyCustomException("Error while creating a checkpoint of the DB...");
+        }
+
+        for (Map.Entry<String, String> folder : folders().entrySet()) {
+            Path source = Path.of(folder.getValue());
+            Path target = root.resolve(folder.getKey());
+            try {
+                Files.createDirectories(target);
+                if (!Files.isDirectory(source))
+                    continue;
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(source, Files::isRegularFile)) {
+                    for (Path file : files) {
+                        if (blockStorage.isAppendedTo(file))
+                            Files.copy(file, target.resolve(file.getFileName()));
+                        else
+                            Utility.linkOrCopy(file, target.resolve(file.getFileName()));
+                    }
+                }
+            } catch (IOException exception) {
+                log.error("Error while adding {} to checkpoint {}", source, root, exception);
+                throw new MyCustomException(String.format("Error while adding the %s files to the checkpoint...", folder.getKey()));
+            }
+        }
+        if (config.getCheckpointIncludeKeys())
+            log.warn("Checkpoint {} holds the private keys of the wallets of this node; It must be kept as safe as the keys themselves", root);
+        log.info("Created checkpoint {}", root);
+        return root;
+    }
+
+    /**
+     * Copies the block files (and the key files if CHECKPOINT_INCLUDE_KEYS is set) of the checkpoint the DB was restored from (see RESTORE_FROM_CHECKPOINT);
+     * They are copied rather than linked as the restored node appends to its block files. Key files the node already has are left as they are
+     */
+    @PostConstruct
+    void restoreFiles() {
+        if (!repository.isRestored())
+            return;
+        for (Map.Entry<String, String> folder : folders().entrySet()) {
+            Path source = Path.of(config.getRestoreFromCheckpoint(), folder.getKey());
+            Path target = Path.of(folder.getValue());
+            if (!Files.isDirectory(source)) {
+                log.error("Checkpoint {} holds no {} files", config.getRestoreFromCheckpoint(), folder.getKey());
+                continue;
+            }
+            int count = 0;
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(source, Files::isRegularFile)) {
+                Files.createDirectories(target);
+                for (Path file : files) {
+                    Path restored = target.resolve(file.getFileName());
+                    if (folder.getKey().equals(KEYS_FOLDER) && Files.exists(restored)) {
+                        log.warn("Key file {} is not restored from the checkpoint as the node has one of the same name", restored);
+                        continue;
+                    }
+                    Files.copy(file, restored, StandardCopyOption.REPLACE_EXISTING);
+                    count++;
+                }
+            } catch (IOException exception) {
+                log.error("Error while restoring {} files from {}", folder.getKey(), source, exception);
+                continue;
+            }
+            log.info("Restored {} {} files from {}", count, folder.getKey(), source);
+        }
+    }
+
+    private Map<String, String> folders() {
+        return config.getCheckpointIncludeKeys() ? FOLDERS_WITH_KEYS : FOLDERS;
+    }
+}
@@ -12,22 +12,27 @@ import io.mycrypto.core.entity.Output;
 import io.mycrypto.core.entity.ScriptPublicKey;
 import io.mycrypto.core.entity.Transaction;
 import io.mycrypto.core.exception.MyCustomException;
+import io.mycrypto.core.repository.AccountsMerge;
+import io.mycrypto.core.repository.ByteCodec;
 import io.mycrypto.core.repository.DbName;
+import io.mycrypto.core.repository.KeyLocks;
+import io.mycrypto.core.repository.KeyValueBatch;
 import io.mycrypto.core.repository.KeyValueRepository;
+import io.mycrypto.core.repository.KeyValueSnapshot;
+import io.mycrypto.core.repository.RecordCodec;
 import io.mycrypto.core.util.UTXOFilterAlgorithms;
 import io.mycrypto.core.util.Utility;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.logging.log4j.util.Strings;
 import org.jetbrains.annotations.NotNull;
 import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.ObjectUtils;
 
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
@@ -47,7 +52,10 @@ public class TransactionService {
     private DodoCommonConfig config;
 
     @Autowired
-    private KeyValueRepository<String, String> rocksDB;
+    private KeyValueRepository<byte[], byte[]> rocksDB;
+
+    @Autowired
+    private KeyLocks keyLocks;
 
     // AVAILABLE ALGORITHMS --------------------------------------
 
@@ -71,13 +79,20 @@ public class TransactionService {
      * @return Transaction Information in JSONObject format
      */
     public JSONObject fetchTransaction(String id, Boolean searchInTransactionPool) throws NullPointerException {
-        String json = rocksDB.find(id, searchInTransactionPool ? TRANSACTIONS_POOL : TRANSACTIONS);
+        byte[] key;
+        try {
+            key = ByteCodec.HEX.encode(id);
+        } catch (IllegalArgumentException exception) {
+            log.error("{} is not a valid transaction id", id);
+            throw new NullPointerException();
+        }
+        byte[] value = rocksDB.find(key, searchInTransactionPool ? TRANSACTIONS_POOL : TRANSACTIONS);
         try {
-            if (json != null)
-                return (JSONObject) new JSONParser().parse(json);
+            if (value != null)
+                return new ObjectMapper().convertValue(RecordCodec.decodeTransaction(value), JSONObject.class);
             throw new NullPointerException();
-        } catch (ParseException exception) {
-            log.error("Error while parsing contents of {} in DB to JSON", id, exception);
+        } catch (IOException exception) {
+            log.error("Error while decoding {} stored in DB", id, exception);
         }
         return null;
     }
@@ -89,7 +104,6 @@ public class TransactionService {
      * @return Transaction object containing all the transaction information of the current transaction
      */
     public Transaction makeTransaction(MakeTransactionDto requestDto) throws MyCustomException {
-        String methodName = "makeTransaction(MakeTransactionDto)";
         WalletInfoDto fromInfo;
         try {
             fromInfo = new ObjectMapper().readValue(requestDto.getFrom(), WalletInfoDto.class);
@@ -98,6 +112,18 @@ public class TransactionService {
             throw new MyCustomException("Error while parsing contents of wallet to WalletInfoDto.class...");
         }
 
+        // the UTXOs of the sender are selected and removed from its wallet while holding the lock on its address;
+        // transactions from the same wallet are serialized so that a UTXO cannot be spent twice, while those from other wallets proceed in parallel
+        KeyLocks.Held held = keyLocks.acquire(ACCOUNTS, fromInfo.getAddress());
+        try {
+            return makeTransaction(requestDto, fromInfo);
+        } finally {
+            held.release();
+        }
+    }
+
+    private Transaction makeTransaction(MakeTransactionDto requestDto, WalletInfoDto fromInfo) throws MyCustomException {
+        String methodName = "makeTransaction(MakeTransactionDto, WalletInfoDto)";
         Transaction transaction = new Transaction(fromInfo.getAddress(), requestDto.getTo());
 
         Boolean processCurrencyInjectionTransaction = Boolean.FALSE;
@@ -109,19 +135,10 @@ public class TransactionService {
         List<Input> inputs = new ArrayList<>();
         List<Output> outputs = new ArrayList<>();
         BigDecimal total;
+        List<UTXODto> utxos = new ArrayList<>();
 
         if (!processCurrencyInjectionTransaction) {
-            List<UTXODto> utxos = selectivelyFetchUTXOs(requestDto.getAmount(), requestDto.getAlgorithm(), fromInfo.getAddress(), ObjectUtils.isEmpty(requestDto.getTransactionFee()) ? config.getTransactionFee() : requestDto.getTransactionFee());
-
-            // Fetching UTXO information from AccountsDB
-            // Needed for tracking the UTXO associated with an account; The UTXO used will be removed and the updated json will be put back into the AccountsDB
-            JSONObject transactionJSON;
-            try {
-                transactionJSON = new ObjectMapper().readValue(rocksDB.find(fromInfo.getAddress(), ACCOUNTS), JSONObject.class);
-            } catch (JsonProcessingException exception) {
-                log.error("An error occurred when formatting to JSON", exception);
-                throw new MyCustomException("Parse Error...");
-            }
+            utxos = selectivelyFetchUTXOs(requestDto.getAmount(), requestDto.getAlgorithm(), fromInfo.getAddress(), ObjectUtils.isEmpty(requestDto.getTransactionFee()) ? config.getTransactionFee() : requestDto.getTransactionFee());
 
             transaction.setNumInputs(utxos.size());
 
@@ -136,15 +153,6 @@ public class TransactionService {
                 inputs.add(input);
             }
 
-            // removing UTXO used for transaction from wallet
-            optimizedVoutRefactoring(transactionJSON, utxos);
-
-            log.info("{}::----------------------- {}", methodName, transactionJSON);
-            // saving updated transaction UTXO information in Accounts DB
-            if (transactionJSON.isEmpty())
-                rocksDB.save(fromInfo.getAddress(), "EMPTY", ACCOUNTS);
-            else
-                rocksDB.save(fromInfo.getAddress(), transactionJSON.toJSONString(), ACCOUNTS);
             transaction.setInputs(inputs);
 
             total = new BigDecimal(0);
@@ -211,7 +219,17 @@ public class TransactionService {
         transaction.setMsg(Strings.isEmpty(requestDto.getMessage()) ? String.format("Transferring %s from %s to %s ...", requestDto.getAmount(), fromInfo.getAddress(), requestDto.getTo()) : requestDto.getMessage());
         transaction.calculateHash();
 
-        saveTransaction(transaction, TRANSACTIONS_POOL);
+        // the UTXOs used are removed from the wallet in the same batch as the transaction is added to the pool
+        try (KeyValueBatch<byte[], byte[]> batch = rocksDB.beginBatch()) {
+            // removing UTXOs used for the transaction from the wallet in Accounts DB
+            for (UTXODto utxo : utxos)
+                batch.merge(ByteCodec.BASE58.encode(fromInfo.getAddress()), ByteCodec.UTF8.encode(AccountsMerge.remove(utxo.getTransactionId(), utxo.getVout())), ACCOUNTS);
+
+            saveTransaction(transaction, TRANSACTIONS_POOL, batch);
+
+            if (!batch.commit())
+                throw new MyCustomException("Error while saving transaction to the Transactions Pool...");
+        }
 
         // Note: the new transaction will not be added to Accounts DB until it gets mined
 
@@ -246,8 +264,13 @@ public class TransactionService {
         transaction.setMsg("Early adopters' reward dodos");
         transaction.calculateHash();
 
-        saveTransaction(transaction, TRANSACTIONS);
-        saveTransactionToWalletIfTransactionPointsToWalletOwned(transaction);
+        try (KeyValueBatch<byte[], byte[]> batch = rocksDB.beginBatch()) {
+            saveTransaction(transaction, TRANSACTIONS, batch);
+            saveTransactionToWalletIfTransactionPointsToWalletOwned(transaction, batch);
+
+            if (!batch.commit())
+                throw new MyCustomException("Error while saving early adopter reward transaction...");
+        }
 
         return transaction;
     }
@@ -286,29 +309,6 @@ public class TransactionService {
         return outputNum;
     }
 
-    private void optimizedVoutRefactoring(JSONObject transactionJSON, List<UTXODto> utxos) {
-        Map<String, List<Long>> utxosSummmary = new HashMap<>();
-        for (UTXODto utxo : utxos) {
-            utxosSummmary.putIfAbsent(utxo.getTransactionId(), new ArrayList<>());
-            utxosSummmary.get(utxo.getTransactionId()).add(utxo.getVout());
-        }
-
-        // selectively removing vouts from json field values
-        for (String transactionId : utxosSummmary.keySet()) {
-            String VOUTs = (String) transactionJSON.get(transactionId);
-            if (VOUTs.contains(",")) {
-                List<String> voutList = new ArrayList<>(List.of(VOUTs.split(",")));
-                for (Long vout : utxosSummmary.get(transactionId))
-                    voutList.remove(vout.toString());
-                if (CollectionUtils.isEmpty(voutList))
-                    transactionJSON.remove(transactionId);
-                else
-                    transactionJSON.put(transactionId, String.join(",", voutList));
-            } else
-                transactionJSON.remove(transactionId);
-        }
-    }
-
     private String constructScriptSig(WalletInfoDto fromInfo, String dataToSign) throws MyCustomException {
         String methodName = "constructScriptSig(WalletInfoDto, String)";
         String signature;
@@ -324,25 +324,31 @@ public class TransactionService {
         return signature + " " + fromInfo.getPublicKey();
     }
 
-    public List<Transaction> retrieveAndDeleteTransactionsFromTransactionsPool() throws MyCustomException {
+    /**
+     * Selects the transactions to be included in the next block from the Transactions Pool; Nothing is removed from the pool
+     *
+     * @return The transactions selected, sorted by transaction fee
+     */
+    public List<Transaction> retrieveTransactionsFromTransactionsPool() throws MyCustomException {
         // checking for if there exists enough transactions within the Transactions Pool
         if (rocksDB.getCount(TRANSACTIONS_POOL) < config.getLowerLimitCount())
             throw new MyCustomException(String.format("Not enough transactions in the Transactions Pool to mine a Block; Must contain at least %s transactions", config.getLowerLimitCount()));
 
-        // retrieving transactions from the transaction pool
-        Map<String, String> transactionsMap = rocksDB.getList(TRANSACTIONS_POOL);
-
-        // converting transactions from JSON String to <Transaction.class>
+        // retrieving transactions from the transaction pool and decoding them to <Transaction.class>
         List<Transaction> transactions = new ArrayList<>();
-        for (String transactionHash : transactionsMap.keySet()) {
+        List<String> unparsed = new ArrayList<>();
+        rocksDB.scan(TRANSACTIONS_POOL, null, 0, (transactionHash, value) -> {
             try {
-                Transaction tx = new ObjectMapper().readValue(transactionsMap.get(transactionHash), Transaction.class);
-                transactions.add(tx);
-            } catch (JsonProcessingException exception) {
-                log.error("An error occurred when formatting to JSON", exception);
-                throw new MyCustomException(String.format("Error while parsing Transaction with id: %s from JSON String to <Transaction.class>", transactionHash));
+                transactions.add(RecordCodec.decodeTransaction(value));
+                return true;
+            } catch (IOException exception) {
+                log.error("An error occurred while decoding a transaction of the Transactions Pool", exception);
+                unparsed.add(ByteCodec.HEX.decode(transactionHash));
+                return false;
             }
-        }
+        });
+        if (!unparsed.isEmpty())
+            throw new MyCustomException(String.format("Error while decoding Transaction with id: %s to <Transaction.class>", unparsed.get(0)));
 
         // sorting transactions according to transaction fee
         transactions.sort(Comparator.comparing(Transaction::getTransactionFee));
@@ -354,30 +360,25 @@ public class TransactionService {
                 transactions.remove((int) i);
         }
 
-        // fetch list of Transaction Details in all Wallet
-        // to be used below
-        Map<String, String> info = rocksDB.getList(ACCOUNTS);
-        if (info == null) {
-            log.error("No content found in Accounts DB...");
-            throw new MyCustomException("No content found in Accounts DB...");
-        }
+        return transactions;
+    }
 
+    /**
+     * Moves transactions from the Transactions Pool to the Transactions DB; The writes are only staged in the batch
+     *
+     * @param transactions Transactions retrieved from the Transactions Pool
+     * @param batch        The batch the writes are added to; They are applied when the batch is committed by the caller
+     */
+    public void deleteTransactionsFromTransactionsPool(List<Transaction> transactions, KeyValueBatch<byte[], byte[]> batch) throws MyCustomException {
         // removing the transactions from the Transactions-PoolDB and adding to TransactionsDB
         for (Transaction tx : transactions) {
-            rocksDB.delete(tx.getTransactionId(), TRANSACTIONS_POOL);
+            batch.delete(ByteCodec.HEX.encode(tx.getTransactionId()), TRANSACTIONS_POOL);
 
             // save transaction information to AccountsDB if transaction has your wallet address
+            saveTransactionToWalletIfTransactionPointsToWalletOwned(tx, batch);
 
-            for (Output out : tx.getOutputs()) {
-                // If the output is mapped to an address that is owned
-                if (info.containsKey(out.getScriptPubKey().getAddress()))
-                    addTransactionToAccounts(out.getScriptPubKey().getAddress(), tx.getTransactionId(), out.getN());
-            }
-
-            saveTransaction(tx, TRANSACTIONS);
+            saveTransaction(tx, TRANSACTIONS, batch);
         }
-
-        return transactions;
     }
 
     /**
@@ -386,9 +387,10 @@ public class TransactionService {
      * @param info             Holds Wallet Information
      * @param forGenesisBlock  A Boolean value which specifies if the coinbase transaction belongs to a genesis block or a normal block
      * @param transactionsList A list of transactions which is considered when the transaction fee of all transactions in a block needs to be considered when mining a block
+     * @param batch            The batch the coinbase transaction is saved in; It is applied when the batch is committed by the caller
      * @return Transaction Object containing information about the coinbase transaction
      */
-    public Transaction constructCoinbaseTransaction(WalletInfoDto info, Boolean forGenesisBlock, List<Transaction> transactionsList) throws MyCustomException {
+    public Transaction constructCoinbaseTransaction(WalletInfoDto info, Boolean forGenesisBlock, List<Transaction> transactionsList, KeyValueBatch<byte[], byte[]> batch) throws MyCustomException {
         Transaction coinbase = new Transaction("", info.getAddress());
         coinbase.setNumInputs(0);
         coinbase.setInputs(new ArrayList<>());
@@ -403,11 +405,11 @@ public class TransactionService {
         coinbase.setMsg(forGenesisBlock ? "The first and only transaction within the genesis block..." : "COINBASE...");
         coinbase.calculateHash(); // calculates and sets transactionId
 
-        saveTransaction(coinbase, TRANSACTIONS);
+        saveTransaction(coinbase, TRANSACTIONS, batch);
         // saving to Transactions DB and not to Transactions-Pool DB for the time being until network broadcast has been implemented
         // TODO: save to Transactions-Pool until network broadcast is brought
 
-        saveTransactionToWalletIfTransactionPointsToWalletOwned(coinbase);
+        saveTransactionToWalletIfTransactionPointsToWalletOwned(coinbase, batch);
 
         return coinbase;
     }
@@ -444,74 +446,125 @@ public class TransactionService {
     }
 
     /**
-     * @param tx Transaction Object holding all the Transaction Information
+     * @param tx    Transaction Object holding all the Transaction Information
+     * @param batch The batch the transaction is saved in
      */
-    private void saveTransaction(Transaction tx, DbName DB) throws MyCustomException {
+    private void saveTransaction(Transaction tx, DbName DB, KeyValueBatch<byte[], byte[]> batch) throws MyCustomException {
         String methodName = "saveTransaction(Transaction, String)";
         String json;
+        byte[] value;
         try {
             ObjectWriter ow = new ObjectMapper().writer().withDefaultPrettyPrinter();
             json = ow.writeValueAsString(tx);
             tx.setSize(new BigInteger(String.valueOf(json.replace(" ", "").length() - "\"size\":null\"weight\": null".length())));
             tx.setWeight(new BigInteger("4").multiply(tx.getSize()).subtract(new BigInteger(String.valueOf(tx.getInputs().size()))));
-            json = ow.writeValueAsString(tx);
-            log.info("{}::{} ==> \n{}", methodName, tx.getTransactionId(), json);
+            log.info("{}::{} ==> \n{}", methodName, tx.getTransactionId(), ow.writeValueAsString(tx));
+            // stored in binary (schema version 3, see SchemaMigrator)
+            value = RecordCodec.encode(tx);
         } catch (JsonProcessingException exception) {
             log.error("Error occurred while parsing Object(Transaction) to json", exception);
             throw new MyCustomException("Error occurred while parsing Object(Transaction) to json");
+        } catch (IOException exception) {
+            log.error("Error occurred while encoding Object(Transaction)", exception);
+            throw new MyCustomException("Error occurred while encoding Object(Transaction)");
         }
 
-        rocksDB.save(tx.getTransactionId(), json, DB);
+        batch.save(ByteCodec.HEX.encode(tx.getTransactionId()), value, DB);
 
         // Saving to Transactions DB only when a transaction is present in a block that is mined
     }
 
     /**
-     * Adds transaction information to associated accounts into DB to keep track of UTXOs
+     * Adds transaction information to associated accounts into DB to keep track of UTXOs;
+     * The output is appended to the entry of the address as a merge operand (see {@link AccountsMerge}), so the entry is not read or rewritten
      *
      * @param address Wallet Address
      * @param txId    Transaction ID
      * @param vout    The VOUT value for the Output in a Transaction
+     * @param batch   The batch the update is staged in
      */
-    void addTransactionToAccounts(String address, String txId, Long vout) throws MyCustomException {
-        String existingTransactions = rocksDB.find(address, ACCOUNTS);
+    void addTransactionToAccounts(String address, String txId, Long vout, KeyValueBatch<byte[], byte[]> batch) {
+        batch.merge(ByteCodec.BASE58.encode(address), ByteCodec.UTF8.encode(AccountsMerge.add(txId, vout)), ACCOUNTS);
+    }
 
-        JSONObject transactions;
-        if (!existingTransactions.equals("EMPTY")) {
-            try {
-                transactions = new ObjectMapper().readValue(existingTransactions, JSONObject.class);
-            } catch (JsonProcessingException exception) {
-                log.error("An error occurred when formatting to JSON", exception);
-                throw new MyCustomException("Error while casting transaction UTXO data from Accounts DB to JSON Object...");
+
+    /**
+     * Retrieves the UTXOs of the given addresses; The entries in Accounts DB and the transactions they point to are read from the same snapshot
+     * so that a block or transaction committed in between cannot leave the two out of step
+     *
+     * @param addresses Addresses of the wallets
+     * @param db        DB in which the transactions are looked up (Transactions or Transactions-Pool)
+     * @return UTXOs of every address in the given order; null for an address that has no entry in Accounts DB
+     */
+    public Map<String, List<UTXODto>> fetchUTXOs(List<String> addresses, DbName db) throws JsonProcessingException, MyCustomException {
+        Map<String, List<UTXODto>> result = new LinkedHashMap<>();
+        try (KeyValueSnapshot<byte[], byte[]> snapshot = rocksDB.openSnapshot()) {
+            List<byte[]> keys = new ArrayList<>();
+            for (String address : addresses) {
+                try {
+                    keys.add(ByteCodec.BASE58.encode(address));
+                } catch (IllegalArgumentException exception) {
+                    log.error("{} is not a valid address", address);
+                    keys.add(null);
+                }
+            }
+            List<byte[]> valid = keys.stream().filter(Objects::nonNull).toList();
+            Iterator<byte[]> accounts = (valid.isEmpty() ? List.<byte[]>of() : snapshot.multiFind(valid, ACCOUNTS)).iterator();
+
+            for (int i = 0; i < addresses.size(); i++) {
+                String transactions = keys.get(i) == null ? null : ByteCodec.UTF8.decode(accounts.next());
+                if (transactions == null) {
+                    result.put(addresses.get(i), null);
+                } else if (transactions.equals("EMPTY")) {
+                    result.put(addresses.get(i), new ArrayList<>());
+                } else {
+                    JSONObject transactionsJSON;
+                    try {
+                        transactionsJSON = new ObjectMapper().readValue(transactions, JSONObject.class);
+                    } catch (JsonProcessingException exception) {
+                        log.error("Error while parsing UTXO data of {} from Accounts DB to JSON", addresses.get(i), exception);
+                        throw new MyCustomException("Error while Parsing UTXO data from Accounts DB to JSON...");
+                    }
+                    result.put(addresses.get(i), retrieveAllUTXOs(transactionsJSON, db, snapshot));
+                }
             }
-        } else {
-            transactions = new JSONObject();
         }
-
-        if (transactions.containsKey(txId))
-            transactions.put(txId, ((String) transactions.get(txId)).concat("," + vout.toString()));
-        else
-            transactions.put(txId, vout.toString());
-        rocksDB.save(address, transactions.toJSONString(), ACCOUNTS);
+        return result;
     }
 
-
     /**
      * Retrieves all UTXOs linked to a WaLLet
      *
      * @param transactions A list of all (transactionId, VOUT) for a given wallet
+     * @param snapshot     The snapshot the Accounts DB entry was read from
      * @return A list of UTXOs liked to a given Wallet
      */
-    public List<UTXODto> retrieveAllUTXOs(JSONObject transactions, DbName db) throws JsonProcessingException, MyCustomException {
+    private List<UTXODto> retrieveAllUTXOs(JSONObject transactions, DbName db, KeyValueSnapshot<byte[], byte[]> snapshot) throws JsonProcessingException, MyCustomException {
         List<UTXODto> result = new ArrayList<>();
-        for (Object txId : transactions.keySet()) {
-            String transaction = rocksDB.find((String) txId, db);
+        // all the transactions of the wallet are looked up in a single call
+        List<String> transactionIds = new ArrayList<>();
+        for (Object txId : transactions.keySet())
+            transactionIds.add((String) txId);
+        List<byte[]> keys = new ArrayList<>();
+        for (String txId : transactionIds)
+            keys.add(ByteCodec.keyOf(db).encode(txId));
+        List<byte[]> values = keys.isEmpty() ? List.of() : snapshot.multiFind(keys, db);
+
+        for (int i = 0; i < transactionIds.size(); i++) {
+            String txId = transactionIds.get(i);
+            byte[] transaction = values.get(i);
             if (transaction == null) {
                 log.error("Could not find transaction {} obtained from Account DB in {}} DB", txId, db);
                 throw new MyCustomException(String.format("Transactions present in wallet not found in %s DB...", db));
             }
 
-            List<Output> outputs = new ObjectMapper().readValue(transaction, Transaction.class).getOutputs();
+            List<Output> outputs;
+            try {
+                outputs = RecordCodec.decodeTransaction(transaction).getOutputs();
+            } catch (IOException exception) {
+                log.error("Error while decoding transaction {} of {} DB", txId, db, exception);
+                throw new MyCustomException(String.format("Error while decoding transaction %s...", txId));
+            }
             BigDecimal amount = null;
 
             String outN = ((String) transactions.get(txId));
@@ -523,7 +576,7 @@ public class TransactionService {
                         if (output.getN() == Long.parseLong(n)) {
                             amount = output.getAmount();
                             result.add(UTXODto.builder()
-                                    .transactionId((String) txId)
+                                    .transactionId(txId)
                                     .vout(Long.parseLong(n))
                                     .amount(amount)
                                     .build()
@@ -535,7 +588,7 @@ public class TransactionService {
                     if (output.getN() == Long.parseLong(outN)) {
                         amount = output.getAmount();
                         result.add(UTXODto.builder()
-                                .transactionId((String) txId)
+                                .transactionId(txId)
                                 .vout(Long.parseLong(outN))
                                 .amount(amount)
                                 .build()
@@ -568,17 +621,15 @@ public class TransactionService {
             throw new MyCustomException(String.format("Amount to start a transaction must be greater than the transaction fee set (%s)", config.getTransactionFee()));
 
         // transaction data for given wallet
-        String transactions = rocksDB.find(walletAddress, ACCOUNTS);
-        if (transactions.equals("EMPTY"))
-            throw new MyCustomException(String.format("No transaction data found for wallet with address: %s", walletAddress));
-
         List<UTXODto> allUTXOs;
         try {
-            allUTXOs = retrieveAllUTXOs(new ObjectMapper().readValue(transactions, JSONObject.class), TRANSACTIONS); // Note: for a UTXO to be used, it must have been mined
+            allUTXOs = fetchUTXOs(List.of(walletAddress), TRANSACTIONS).get(walletAddress); // Note: for a UTXO to be used, it must have been mined
         } catch (JsonProcessingException exception) {
             log.error("Error while parsing transaction info in DB to <Transaction.class> OR utxo info to JSON", exception);
             throw new MyCustomException("Error while parsing transaction info in DB to <Transaction.class> OR utxo info to JSON");
         }
+        if (allUTXOs == null)
+            throw new MyCustomException(String.format("No transaction data found for wallet with address: %s", walletAddress));
         if (CollectionUtils.isEmpty(allUTXOs))
             throw new MyCustomException("Wallet is empty...");
 
@@ -625,18 +676,11 @@ public class TransactionService {
         return alg;
     }
 
-    private void saveTransactionToWalletIfTransactionPointsToWalletOwned(Transaction tx) throws MyCustomException {
-        // fetch list of Transaction Details in all Wallet
-        Map<String, String> utxoInfo = rocksDB.getList(ACCOUNTS);
-        if (CollectionUtils.isEmpty(utxoInfo)) {
-            log.error("No content found in Accounts DB...");
-            throw new MyCustomException("No content found in Accounts DB...");
-        }
-
+    private void saveTransactionToWalletIfTransactionPointsToWalletOwned(Transaction tx, KeyValueBatch<byte[], byte[]> batch) throws MyCustomException {
         for (Output out : tx.getOutputs()) {
-            // If the output is mapped to an address that is owned
-            if (utxoInfo.containsKey(out.getScriptPubKey().getAddress()))
-                addTransactionToAccounts(out.getScriptPubKey().getAddress(), tx.getTransactionId(), out.getN());
+            // If the output is mapped to an address that is owned (every owned address has an entry in Accounts DB)
+            if (batch.find(ByteCodec.BASE58.encode(out.getScriptPubKey().getAddress()), ACCOUNTS) != null)
+                addTransactionToAccounts(out.getScriptPubKey().getAddress(), tx.getTransactionId(), out.getN(), batch);
         }
     }
 }
@@ -12,7 +12,6 @@ import io.mycrypto.core.service.transaction.TransactionService;
 import io.mycrypto.core.util.Utility;
 import lombok.extern.slf4j.Slf4j;
 import org.bitcoinj.core.Base58;
-import org.json.simple.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
@@ -46,37 +45,42 @@ public class WalletService {
             throw new RuntimeException();
         }
 
-        List<SimplifiedWalletInfoDto> response = new ArrayList<>();
+        // convert from JSON-string to WalletInfoDto to get <Address>
+        List<String> walletNames = new ArrayList<>();
+        List<String> addresses = new ArrayList<>();
         for (Map.Entry<String, String> i : info.entrySet()) {
-            // convert from JSON-string to WalletInfoDto to get <Address>
             WalletInfoDto temp = null;
             try {
                 temp = new ObjectMapper().readValue(i.getValue(), WalletInfoDto.class);
             } catch (JsonProcessingException exception) {
                 log.error("Error occurred while trying to parse data from Wallets DB to that of type <WalletInfoDto>...", exception);
             }
+            assert temp != null;
+            walletNames.add(i.getKey());
+            addresses.add(temp.getAddress());
+        }
+
+        // get the UTXOs of all the wallets from "Accounts" DB at once; all the balances are calculated from the same snapshot
+        Map<String, List<UTXODto>> UTXOsByAddress;
+        try {
+            UTXOsByAddress = transactionService.fetchUTXOs(addresses, TRANSACTIONS);
+        } catch (JsonProcessingException | MyCustomException e) {
+            throw new RuntimeException(e);
+        }
 
+        List<SimplifiedWalletInfoDto> response = new ArrayList<>();
+        for (int i = 0; i < walletNames.size(); i++) {
             BigDecimal balance = new BigDecimal("0");
 
-            // get balance from "Accounts" DB
-            assert temp != null;
-            String transactionDetails = rocksDB.find(temp.getAddress(), ACCOUNTS);
-            List<UTXODto> UTXOs = null;
-            if (!transactionDetails.equals("EMPTY")) {
-                try {
-                    UTXOs = transactionService.retrieveAllUTXOs(new ObjectMapper().readValue(transactionDetails, JSONObject.class), TRANSACTIONS);
-                } catch (JsonProcessingException | MyCustomException e) {
-                    throw new RuntimeException(e);
-                }
-            }
+            List<UTXODto> UTXOs = UTXOsByAddress.get(addresses.get(i));
             if (!CollectionUtils.isEmpty(UTXOs))
                 for (UTXODto utxo : UTXOs)
                     balance = balance.add(utxo.getAmount());
 
             // construct response
             response.add(SimplifiedWalletInfoDto.builder()
-                    .walletName(i.getKey())
-                    .address(temp.getAddress())
+                    .walletName(walletNames.get(i))
+                    .address(addresses.get(i))
                     .balance(balance)
                     .build());
         }
@@ -16,6 +16,8 @@ import org.json.simple.parser.ParseException;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.*;
 import java.security.interfaces.ECPublicKey;
 import java.security.spec.ECGenParameterSpec;
@@ -35,7 +37,7 @@ public class Utility {
     private static final String FOLDER_TO_STORE_KEYS = "KEYS";
     private static final String PROJECT_FOLDER = "Dodo";
 
-    private static final String LOCATION_TO_STORE_KEY;
+    public static final String LOCATION_TO_STORE_KEY;
 
     private static final byte EVEN = 0x02;
     private static final byte ODD = 0x03;
@@ -294,4 +296,13 @@ public class Utility {
         Set<String> keys = files.stream().map(x -> x.split("_")[0]).collect(Collectors.toSet());
         return keys.contains(keyName);
     }
+
+    // hard links are not available across file systems, in which case the file is copied
+    public static void linkOrCopy(Path source, Path target) throws IOException {
+        try {
+            Files.createLink(target, source);
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(source, target);
+        }
+    }
 }
@@ -1,5 +1,6 @@
 package io.mycrypto.webrtc.service;
 
+import io.mycrypto.core.config.DodoCommonConfig;
 import io.mycrypto.core.repository.DbName;
 import io.mycrypto.core.repository.KeyValueRepository;
 import io.mycrypto.webrtc.service.tags.P2pStatus;
@@ -9,7 +10,8 @@ import org.springframework.messaging.simp.user.SimpUserRegistry;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 
 @Slf4j
 @Service
@@ -21,6 +23,9 @@ public class ConnectionCheckScheduler {
     @Autowired
     private KeyValueRepository<String, String> rocksDb;
 
+    @Autowired
+    private DodoCommonConfig config;
+
     private final SimpUserRegistry simpUserRegistry;
 
     public ConnectionCheckScheduler(SimpUserRegistry simpUserRegistry) {
@@ -29,26 +34,20 @@ public class ConnectionCheckScheduler {
 
     @Scheduled(fixedDelay = 120000)
     public void connectionHealthCheck() {
+        if (config.getQueryOnly())
+            return;
         if (simpUserRegistry.getUsers().isEmpty()) {
             log.info("Number of connected peers: {}", simpUserRegistry.getUsers().size());
         } else
             log.info("Peers: {}", simpUserRegistry.getUsers());
 
-        Map<String, String> p2pDbData = rocksDb.getList(DbName.P2P);
-        if (!p2pDbData.isEmpty()) {
-            service.establishConnectionWithRemotePeersAsClient(
-                    p2pDbData
-                            .entrySet()
-                            .stream()
-                            .filter(
-                                    x -> x.getValue()
-                                            .equals(
-                                                    P2pStatus.DISCONNECTED.toString()
-                                            )
-                            )
-                            .map(Map.Entry::getKey)
-                            .toList()
-            );
-        }
+        List<String> disconnectedPeers = new ArrayList<>();
+        rocksDb.scan(DbName.P2P, null, 0, (address, status) -> {
+            if (status.equals(P2pStatus.DISCONNECTED.toString()))
+                disconnectedPeers.add(address);
+            return true;
+        });
+        if (!disconnectedPeers.isEmpty())
+            service.establishConnectionWithRemotePeersAsClient(disconnectedPeers);
     }
 }
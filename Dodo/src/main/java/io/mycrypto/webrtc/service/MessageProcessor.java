@@ -3,8 +3,8 @@ package io.mycrypto.webrtc.service;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Strings;
+import io.mycrypto.core.repository.AsyncKeyValueRepository;
 import io.mycrypto.core.repository.DbName;
-import io.mycrypto.core.repository.KeyValueRepository;
 import io.mycrypto.webrtc.controller.DodoClientController;
 import io.mycrypto.webrtc.dto.IceOfferDto;
 import io.mycrypto.webrtc.dto.IceRequestDto;
@@ -13,6 +13,7 @@ import io.mycrypto.webrtc.dto.PeersDto;
 import io.mycrypto.webrtc.entity.StompMessage;
 import io.mycrypto.webrtc.service.tags.MessageType;
 import io.mycrypto.webrtc.service.tags.P2pStatus;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
@@ -23,7 +24,11 @@ import org.springframework.messaging.simp.stomp.StompHeaders;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static io.mycrypto.webrtc.service.tags.MessageType.ICE_OFFER;
@@ -40,10 +45,19 @@ public class MessageProcessor {
     private IceGathering ice;
 
     @Autowired
-    private KeyValueRepository<String, String> rocksDb;
+    private AsyncKeyValueRepository rocksDb;
 
     private final Map<MessageType, Integer> messageCountTracker = new HashMap<>();
 
+    // updates of the WEBRTC and P2P DBs run one after the other, in the order the messages were received; Their steps are chained on this thread
+    // rather than on the repository I/O threads, which must not wait for room in their own queue
+    private final ExecutorService updates = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "webrtc-updates");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private CompletableFuture<Void> pendingUpdates = CompletableFuture.completedFuture(null);
+
     private final String signalingServerDestinationUri = "/signal/message";
 
     public void processMessageAsServer(String sessionId, String userName, StompMessage payload) {
@@ -108,11 +122,12 @@ public class MessageProcessor {
         }
 
         assert peers != null;
-        rocksDb.save(
+        String remotePeers = peers.getDodoAddresses().toString().replaceAll("[\\[\\]\\s]", "");
+        afterPendingUpdates(() -> rocksDb.save(
                 DbName.PEERS.toString(),
-                peers.getDodoAddresses().toString().replaceAll("[\\[\\]\\s]", ""),
+                remotePeers,
                 DbName.WEBRTC
-        );
+        ));
 
         if (peers.getDodoAddresses().isEmpty()) {
             if (messageCountTracker.get(MessageType.PEERS) == 3) {
@@ -255,67 +270,70 @@ public class MessageProcessor {
                 }
 
                 assert iceOffer != null;
-                // save to P2P DB
-                rocksDb.save(
-                        iceOffer.getFrom(),
-                        P2pStatus.DISCONNECTED.toString(),
-                        DbName.P2P
-                );
-
-                String resultFromDb = rocksDb.find(
-                        DbName.ICE.toString(),
-                        DbName.WEBRTC
-                );
-
-                JSONObject saveToDb = null;
-                if (resultFromDb == null) {
-                    saveToDb = new JSONObject();
-                } else {
-                    try {
-                        saveToDb = (JSONObject) new JSONParser().parse(resultFromDb);
-                    } catch (ParseException exception) {
-                        log.error("An exception occurred when parsing a string to JSON object", exception);
-                    }
-                }
-
-                assert saveToDb != null;
-                saveToDb.put(
-                        iceOffer.getFrom(),
-                        iceOffer.getIce().toJsonObject()
-                );
-
-                rocksDb.save(
-                        DbName.ICE.toString(),
-                        saveToDb.toJSONString(),
-                        DbName.WEBRTC
-                );
-                
-                /* check for if this peer can close session with the signalling server 
-                by checking if there are any peers left to provide their ice candidates */
-                Set<String> remotePeers = Arrays.stream(rocksDb.find(
-                        DbName.PEERS.toString(),
-                        DbName.WEBRTC
-                ).split(",")).collect(Collectors.toSet());
-
-                if (remotePeers.size() == 1 && remotePeers.contains(iceOffer.getFrom())) {
-                    client.sendMessage(
-                            signalingServerDestinationUri,
-                            new StompMessage(
-                                    client.getDodoAddress(),
-                                    MessageType.FINISH,
-                                    String.format(
-                                            """
-                                                    {
-                                                        "to": "%s"
-                                                    }
-                                                    """,
-                                            iceOffer.getFrom()
-                                    )
-                            )
-                    );
-                }
-
-                closeSessionWithSignallingServer(client, payload);
+                IceOfferDto offer = iceOffer;
+                afterPendingUpdates(() -> rocksDb.save(
+                                // save to P2P DB
+                                offer.getFrom(),
+                                P2pStatus.DISCONNECTED.toString(),
+                                DbName.P2P
+                        )
+                        .thenComposeAsync(ignored -> rocksDb.find(
+                                DbName.ICE.toString(),
+                                DbName.WEBRTC
+                        ), updates)
+                        .thenComposeAsync(resultFromDb -> {
+                            JSONObject saveToDb = null;
+                            if (resultFromDb == null) {
+                                saveToDb = new JSONObject();
+                            } else {
+                                try {
+                                    saveToDb = (JSONObject) new JSONParser().parse(resultFromDb);
+                                } catch (ParseException exception) {
+                                    log.error("An exception occurred when parsing a string to JSON object", exception);
+                                }
+                            }
+
+                            assert saveToDb != null;
+                            saveToDb.put(
+                                    offer.getFrom(),
+                                    offer.getIce().toJsonObject()
+                            );
+
+                            return rocksDb.save(
+                                    DbName.ICE.toString(),
+                                    saveToDb.toJSONString(),
+                                    DbName.WEBRTC
+                            );
+                        }, updates)
+                        .thenComposeAsync(ignored -> rocksDb.find(
+                                DbName.PEERS.toString(),
+                                DbName.WEBRTC
+                        ), updates)
+                        .thenComposeAsync(peersFromDb -> {
+                            /* check for if this peer can close session with the signalling server
+                            by checking if there are any peers left to provide their ice candidates */
+                            Set<String> remotePeers = Arrays.stream(peersFromDb.split(",")).collect(Collectors.toSet());
+
+                            if (remotePeers.size() == 1 && remotePeers.contains(offer.getFrom())) {
+                                client.sendMessage(
+                                        signalingServerDestinationUri,
+                                        new StompMessage(
+                                                client.getDodoAddress(),
+                                                MessageType.FINISH,
+                                                String.format(
+                                                        """
+                                                                {
+                                                                    "to": "%s"
+                                                                }
+                                                                """,
+                                                        offer.getFrom()
+                                                )
+                                        )
+                                );
+                            }
+
+                            return closeSessionWithSignallingServer(client, payload);
+                        }, updates));
             }
         }
     }
@@ -329,37 +347,48 @@ public class MessageProcessor {
                      Attempting to connect to remote PEERS.
                 -------------------------------------------------
                 """);
-        closeSessionWithSignallingServer(client, payload);
+        afterPendingUpdates(() -> closeSessionWithSignallingServer(client, payload));
     }
 
-    private void closeSessionWithSignallingServer(DodoClientController client, StompMessage payload) {
-        if (
-                !Strings.isNullOrEmpty(rocksDb.find(
-                        DbName.PEERS.toString(),
-                        DbName.WEBRTC
-                ))
-        ) {
-            List<String> peers =
-                    new ArrayList<>(Arrays.stream(
-                            rocksDb.find(
-                                    DbName.PEERS.toString(),
-                                    DbName.WEBRTC
-                            ).split(",")
-                    ).toList());
+    private CompletableFuture<Void> closeSessionWithSignallingServer(DodoClientController client, StompMessage payload) {
+        return rocksDb.find(
+                DbName.PEERS.toString(),
+                DbName.WEBRTC
+        ).thenComposeAsync(peersFromDb -> {
+            if (Strings.isNullOrEmpty(peersFromDb))
+                return CompletableFuture.completedFuture(null);
+
+            List<String> peers = new ArrayList<>(Arrays.stream(peersFromDb.split(",")).toList());
 
             if (peers.size() == 1) {
                 client.shutDown();
             }
 
             peers.remove(payload.getFrom());
-            rocksDb.save(
+            return rocksDb.save(
                     DbName.PEERS.toString(),
                     peers.isEmpty() ?
                             "" :
                             peers.toString().replaceAll("[\\[\\]\\s]", ""),
                     DbName.WEBRTC
             );
-        }
+        }, updates);
+    }
+
+    /**
+     * Starts the update once the updates handed over before it have completed; Returns right away so that the inbound thread never waits on the disk. <br>
+     * The updates build on each other, so once one fails (e.g. a write rejected by the repository) the updates after it are dropped
+     */
+    private synchronized void afterPendingUpdates(Supplier<CompletableFuture<Void>> update) {
+        pendingUpdates = pendingUpdates.thenComposeAsync(ignored -> update.get().whenComplete((result, exception) -> {
+            if (exception != null)
+                log.error("An error occurred while updating the WEBRTC and P2P DBs; The updates received after it are dropped", exception);
+        }), updates);
+    }
+
+    @PreDestroy
+    void close() {
+        updates.shutdown();
     }
 
     public void sendMessageToPeer(String sendTo, String message) {
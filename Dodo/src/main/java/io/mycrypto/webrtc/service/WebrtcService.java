@@ -43,6 +43,9 @@ public class WebrtcService {
 
     @EventListener(ApplicationReadyEvent.class)
     public void startPeerStateInstantiation() {
+        // the primary node takes part in the network; a query-only node only serves reads
+        if (config.getQueryOnly())
+            return;
         DodoClientController client = establishConnectionWithSignallingServer();
 
         if (client == null) {
@@ -0,0 +1,87 @@
+package io.mycrypto.core.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountsMergeTests {
+
+    @Test
+    void leavesEntriesWithoutOperandsAsTheyAre() {
+        byte[] json = bytes("{\"tx1\":\"0,1\"}");
+        assertSame(json, AccountsMerge.resolve(json));
+        byte[] empty = bytes("EMPTY");
+        assertSame(empty, AccountsMerge.resolve(empty));
+    }
+
+    @Test
+    void foldsOperandsIntoTheJsonOfTheEntry() {
+        String entry = String.join(String.valueOf(AccountsMerge.DELIMITER),
+                "{\"tx1\":\"0,1\"}",
+                AccountsMerge.add("tx2", 3),
+                AccountsMerge.remove("tx1", 0),
+                AccountsMerge.add("tx1", 2),
+                // outputs are only credited once
+                AccountsMerge.add("tx2", 3));
+
+        assertEquals("{\"tx1\":\"1,2\",\"tx2\":\"3\"}", string(AccountsMerge.resolve(bytes(entry))));
+    }
+
+    @Test
+    void foldsOperandsOntoEmptyAndMissingEntries() {
+        String onEmpty = "EMPTY" + AccountsMerge.DELIMITER + AccountsMerge.add("tx1", 0);
+        assertEquals("{\"tx1\":\"0\"}", string(AccountsMerge.resolve(bytes(onEmpty))));
+
+        // an entry created by a merge holds no JSON, only operands
+        String operandsOnly = AccountsMerge.add("tx1", 0) + AccountsMerge.DELIMITER + AccountsMerge.add("tx1", 1);
+        assertEquals("{\"tx1\":\"0,1\"}", string(AccountsMerge.resolve(bytes(operandsOnly))));
+        assertEquals("{\"tx1\":\"4\"}", string(AccountsMerge.resolve(bytes(AccountsMerge.add("tx1", 4)))));
+    }
+
+    @Test
+    void resolvesToEmptyOnceEveryOutputIsSpent() {
+        String entry = String.join(String.valueOf(AccountsMerge.DELIMITER),
+                "{\"tx1\":\"0\"}",
+                AccountsMerge.remove("tx1", 0),
+                // removing an output the entry does not hold changes nothing
+                AccountsMerge.remove("tx9", 1));
+
+        assertEquals("EMPTY", string(AccountsMerge.resolve(bytes(entry))));
+    }
+
+    @Test
+    void keepsTransactionIdsHoldingColons() {
+        String entry = "{\"a:b\":\"0\"}" + AccountsMerge.DELIMITER + AccountsMerge.add("a:b", 1);
+        assertEquals("{\"a:b\":\"0,1\"}", string(AccountsMerge.resolve(bytes(entry))));
+    }
+
+    @Test
+    void foldsOperandsIntoPrettyPrintedJson() {
+        // entries written before schema version 2 hold line breaks of their own
+        String pretty = "{\n  \"tx1\" : \"0\",\n  \"tx2\" : \"1\"\n}";
+        assertEquals(0, AccountsMerge.operands(bytes(pretty)));
+        assertArrayEquals(bytes(pretty), AccountsMerge.resolve(bytes(pretty)));
+
+        String entry = pretty + AccountsMerge.DELIMITER + AccountsMerge.remove("tx1", 0) + AccountsMerge.DELIMITER + AccountsMerge.add("tx3", 2);
+        assertEquals(2, AccountsMerge.operands(bytes(entry)));
+        assertEquals("{\"tx2\":\"1\",\"tx3\":\"2\"}", string(AccountsMerge.resolve(bytes(entry))));
+    }
+
+    @Test
+    void countsTheOperandsAppendedToTheEntry() {
+        assertEquals(0, AccountsMerge.operands(bytes("{\"tx1\":\"0\"}")));
+        String entry = "{\"tx1\":\"0\"}" + AccountsMerge.DELIMITER + AccountsMerge.add("tx1", 1) + AccountsMerge.DELIMITER + AccountsMerge.remove("tx1", 0);
+        assertEquals(2, AccountsMerge.operands(bytes(entry)));
+        assertEquals(0, AccountsMerge.operands(AccountsMerge.resolve(bytes(entry))));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] value) {
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,90 @@
+package io.mycrypto.core.repository;
+
+import io.mycrypto.core.config.DodoCommonConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class AsyncKeyValueRepositoryTests {
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final Set<Thread> callers = ConcurrentHashMap.newKeySet();
+    private AsyncKeyValueRepository async;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        KeyValueRepository<String, String> repository = mock(KeyValueRepository.class);
+        // every call waits for the test to release it and records the thread it ran on
+        doAnswer(invocation -> {
+            callers.add(Thread.currentThread());
+            release.await();
+            return null;
+        }).when(repository).save(anyString(), anyString(), any());
+        DodoCommonConfig config = mock(DodoCommonConfig.class);
+        when(config.getRepositoryIoThreads()).thenReturn(1);
+        when(config.getRepositoryIoQueueCapacity()).thenReturn(1);
+        when(config.getRepositoryIoSubmitTimeoutMs()).thenReturn(200L);
+
+        async = new AsyncKeyValueRepository();
+        ReflectionTestUtils.setField(async, "repository", repository);
+        ReflectionTestUtils.setField(async, "config", config);
+        ReflectionTestUtils.invokeMethod(async, "initialize");
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        ReflectionTestUtils.invokeMethod(async, "close");
+    }
+
+    @Test
+    void rejectsCallsOnceTheQueueStaysFullInsteadOfRunningThemOnTheCaller() throws Exception {
+        CompletableFuture<Void> running = async.save("a", "1", DbName.NODES);
+        CompletableFuture<Void> queued = async.save("b", "2", DbName.NODES);
+
+        long start = System.nanoTime();
+        CompletableFuture<Void> rejected = async.save("c", "3", DbName.NODES);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 200, "the caller waits for room before the call is rejected");
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> rejected.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, exception.getCause());
+
+        release.countDown();
+        running.get(5, TimeUnit.SECONDS);
+        queued.get(5, TimeUnit.SECONDS);
+        assertFalse(callers.contains(Thread.currentThread()));
+    }
+
+    @Test
+    void queuesTheCallOnceRoomIsMadeWithinTheTimeout() throws Exception {
+        CompletableFuture<Void> running = async.save("a", "1", DbName.NODES);
+        async.save("b", "2", DbName.NODES);
+
+        CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS).execute(release::countDown);
+        CompletableFuture<Void> waited = async.save("c", "3", DbName.NODES);
+
+        waited.get(5, TimeUnit.SECONDS);
+        assertTrue(running.isDone());
+        assertFalse(callers.contains(Thread.currentThread()));
+    }
+
+    @Test
+    void rejectsCallsMadeFromAnIoThreadWithoutWaitingForRoom() {
+        // the continuation runs on the only I/O thread, while the queue is still full
+        CompletableFuture<Void> fromIoThread = async.save("a", "1", DbName.NODES).thenCompose(ignored -> async.save("c", "3", DbName.NODES));
+        async.save("b", "2", DbName.NODES);
+
+        release.countDown();
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> fromIoThread.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, exception.getCause());
+        assertTrue(exception.getCause().getMessage().contains("do not wait for room"));
+    }
+}
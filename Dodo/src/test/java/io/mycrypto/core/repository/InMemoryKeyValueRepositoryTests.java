@@ -0,0 +1,116 @@
+package io.mycrypto.core.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static io.mycrypto.core.repository.DbName.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryKeyValueRepositoryTests {
+    private InMemoryKeyValueRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = new InMemoryKeyValueRepository();
+    }
+
+    @Test
+    void countsEntriesSavedDeletedAndWrittenInBatches() {
+        repository.save(bytes("a"), bytes("1"), WALLETS);
+        repository.save(bytes("b"), bytes("2"), WALLETS);
+        repository.save(bytes("a"), bytes("3"), WALLETS);
+        assertEquals(2, repository.getCount(WALLETS));
+        assertArrayEquals(bytes("3"), repository.find(bytes("a"), WALLETS));
+
+        repository.delete(bytes("a"), WALLETS);
+        repository.delete(bytes("missing"), WALLETS);
+        assertEquals(1, repository.getCount(WALLETS));
+        assertNull(repository.find(bytes("a"), WALLETS));
+
+        try (KeyValueBatch<byte[], byte[]> batch = repository.beginBatch()) {
+            batch.save(bytes("c"), bytes("4"), WALLETS);
+            batch.save(bytes("d"), bytes("5"), WALLETS);
+            batch.delete(bytes("b"), WALLETS);
+            batch.save(bytes("x"), bytes("6"), NODES);
+            // nothing is written until the batch is committed
+            assertEquals(1, repository.getCount(WALLETS));
+            assertArrayEquals(bytes("4"), batch.find(bytes("c"), WALLETS));
+            assertNull(batch.find(bytes("b"), WALLETS));
+            assertTrue(batch.commit());
+        }
+        assertEquals(2, repository.getCount(WALLETS));
+        assertEquals(1, repository.getCount(NODES));
+        assertNull(repository.find(bytes("b"), WALLETS));
+    }
+
+    @Test
+    void foldsMergeOperandsOfAccounts() {
+        repository.save(bytes("address"), bytes("EMPTY"), ACCOUNTS);
+        repository.merge(bytes("address"), bytes(AccountsMerge.add("tx1", 0)), ACCOUNTS);
+        repository.merge(bytes("address"), bytes(AccountsMerge.add("tx1", 1)), ACCOUNTS);
+        repository.merge(bytes("address"), bytes(AccountsMerge.remove("tx1", 0)), ACCOUNTS);
+
+        assertEquals("{\"tx1\":\"1\"}", string(repository.find(bytes("address"), ACCOUNTS)));
+        assertEquals(1, repository.getCount(ACCOUNTS));
+    }
+
+    @Test
+    void snapshotReadsTheDbsAsTheyWereWhenOpened() {
+        repository.save(bytes("a"), bytes("1"), WALLETS);
+        repository.save(bytes("b"), bytes("2"), WALLETS);
+
+        try (KeyValueSnapshot<byte[], byte[]> snapshot = repository.openSnapshot()) {
+            repository.save(bytes("a"), bytes("3"), WALLETS);
+            repository.save(bytes("a"), bytes("4"), WALLETS);
+            repository.delete(bytes("b"), WALLETS);
+            repository.save(bytes("c"), bytes("5"), WALLETS);
+
+            assertArrayEquals(bytes("1"), snapshot.find(bytes("a"), WALLETS));
+            List<byte[]> values = snapshot.multiFind(List.of(bytes("a"), bytes("b"), bytes("c")), WALLETS);
+            assertArrayEquals(bytes("1"), values.get(0));
+            assertArrayEquals(bytes("2"), values.get(1));
+            assertNull(values.get(2));
+        }
+        assertArrayEquals(bytes("4"), repository.find(bytes("a"), WALLETS));
+        assertNull(repository.find(bytes("b"), WALLETS));
+    }
+
+    @Test
+    void openSnapshotDoesNotBlockWriters() throws Exception {
+        try (KeyValueSnapshot<byte[], byte[]> snapshot = repository.openSnapshot()) {
+            CompletableFuture<Void> write = CompletableFuture.runAsync(() -> repository.save(bytes("a"), bytes("1"), WALLETS));
+            write.get(5, TimeUnit.SECONDS);
+            assertNull(snapshot.find(bytes("a"), WALLETS));
+        }
+        assertArrayEquals(bytes("1"), repository.find(bytes("a"), WALLETS));
+    }
+
+    @Test
+    void scansInKeyOrderFromKeyAndByPrefix() {
+        for (String key : List.of("b1", "a2", "b3", "a1", "c1"))
+            repository.save(bytes(key), bytes(key), NODES);
+
+        List<String> scanned = new ArrayList<>();
+        assertEquals(3, repository.scan(NODES, bytes("a2"), 3, (key, value) -> scanned.add(string(key))));
+        assertEquals(List.of("a2", "b1", "b3"), scanned);
+
+        scanned.clear();
+        repository.scanPrefix(NODES, bytes("b"), 0, (key, value) -> scanned.add(string(key)));
+        assertEquals(List.of("b1", "b3"), scanned);
+        assertEquals(5, repository.getList(NODES).size());
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] value) {
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,115 @@
+package io.mycrypto.core.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.mycrypto.core.entity.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordCodecTests {
+    private static final String ADDRESS = "1PCRScABGJnmFK8ySqpWAZzHfjekfZmMMr";
+    private static final String HASH160 = "f5a6b8bc6d6f3fbeb0dca9c2cbf73b4a9a1d4a37";
+
+    @Test
+    void roundTripsOutputSplitByRatio() throws IOException {
+        // as TransactionService#splitAndConstructOutputs splits an amount for the output parts "1:2"
+        BigDecimal amount = new BigDecimal("123456.789");
+        BigDecimal part = amount.multiply(BigDecimal.valueOf(1.0 / 3));
+        assertTrue(part.unscaledValue().bitLength() > Long.SIZE - 1);
+
+        Transaction decoded = RecordCodec.decodeTransaction(RecordCodec.encode(transaction(part, amount.multiply(BigDecimal.valueOf(2.0 / 3)))));
+
+        assertEquals(part, decoded.getOutputs().get(0).getAmount());
+        assertEquals(amount.multiply(BigDecimal.valueOf(2.0 / 3)), decoded.getOutputs().get(1).getAmount());
+    }
+
+    @Test
+    void roundTripsAmountsOfAnyScale() throws IOException {
+        List<BigDecimal> amounts = List.of(
+                new BigDecimal("43.0000"), new BigDecimal("0.5"), BigDecimal.ZERO, new BigDecimal("1E+3"), new BigDecimal("-7.25"),
+                new BigDecimal("0.000000000000000000000000000001"), new BigDecimal(BigInteger.TWO.pow(200), 17), new BigDecimal(Long.MIN_VALUE));
+
+        for (BigDecimal amount : amounts) {
+            Transaction decoded = RecordCodec.decodeTransaction(RecordCodec.encode(transaction(amount, null)));
+            // equals compares the scale as well
+            assertEquals(amount, decoded.getOutputs().get(0).getAmount());
+            assertNull(decoded.getOutputs().get(1).getAmount());
+        }
+    }
+
+    @Test
+    void roundTripsBlockAndHeader() throws IOException {
+        Block block = new Block();
+        block.setHash("00ab" + HASH160);
+        block.setPreviousHash("0");
+        block.setBlockOwner(ADDRESS);
+        block.setHeight(7L);
+        block.setTimeStamp(1792217205374L);
+        block.setNonce(42L);
+        block.setDifficulty(4);
+        block.setMerkleRoot(HASH160);
+        block.setSize(BigInteger.valueOf(1234));
+        block.setWeight(BigInteger.valueOf(4936));
+        Transaction transaction = transaction(new BigDecimal("0.16666666666666665"), new BigDecimal("17.0"));
+        block.setTransactions(new ArrayList<>(List.of(transaction)));
+        block.setTransactionIds(new ArrayList<>(List.of(transaction.getTransactionId())));
+        block.setNumTx(1L);
+
+        byte[] encoded = RecordCodec.encode(block);
+        Block decoded = RecordCodec.decodeBlock(ByteBuffer.wrap(encoded), true);
+        assertEquals(block, decoded);
+
+        Block header = RecordCodec.decodeBlock(ByteBuffer.wrap(encoded), false);
+        assertNull(header.getTransactions());
+        assertEquals(block.getTransactionIds(), header.getTransactionIds());
+        assertEquals(header, RecordCodec.decodeHeader(RecordCodec.encodeHeader(block)));
+    }
+
+    @Test
+    void readsJsonRecords() throws IOException {
+        Transaction transaction = transaction(new BigDecimal("43.0000"), null);
+        byte[] json = new ObjectMapper().writeValueAsBytes(transaction);
+
+        assertTrue(RecordCodec.isJson(json));
+        assertEquals(transaction, RecordCodec.decodeTransaction(json));
+    }
+
+    private static Transaction transaction(BigDecimal first, BigDecimal second) {
+        Transaction transaction = new Transaction();
+        transaction.setTimeStamp(1792217205374L);
+        transaction.setFrom(ADDRESS);
+        transaction.setTo("Test message / not an address");
+
+        Input input = new Input();
+        input.setTransactionId("");
+        input.setVout(-1L);
+        input.setScriptSig("3045022100abcd 04ef");
+        input.setSize((long) input.getScriptSig().length());
+        transaction.setInputs(new ArrayList<>(List.of(input)));
+        transaction.setNumInputs(0L);
+
+        List<Output> outputs = new ArrayList<>();
+        for (BigDecimal amount : Arrays.asList(first, second)) {
+            Output output = new Output();
+            output.setAmount(amount);
+            output.setN((long) outputs.size());
+            output.setScriptPubKey(new ScriptPublicKey(HASH160, ADDRESS));
+            outputs.add(output);
+        }
+        transaction.setOutputs(outputs);
+        transaction.setNumOutputs((long) outputs.size());
+        transaction.setSpent(first);
+        transaction.setTransactionFee(new BigDecimal("0.001"));
+        transaction.setMsg("Transferring 1 from a to b ...");
+        transaction.setTransactionId(HASH160 + HASH160.substring(0, 16));
+        return transaction;
+    }
+}
@@ -0,0 +1,102 @@
+package io.mycrypto.core.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static io.mycrypto.core.repository.DbName.NODES;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Read/write throughput of the RocksDB repository with the table profile of config.properties; <br>
+ * Not part of the default test run (surefire only picks up *Tests classes), run it with
+ * mvn test -Dtest=RocksDBRepositoryBenchmark [-Dbenchmark.records=300000 -Dbenchmark.lookups=200000]
+ */
+@Slf4j
+@SpringBootTest
+class RocksDBRepositoryBenchmark {
+    private static final int RECORDS = Integer.getInteger("benchmark.records", 300000);
+    private static final int LOOKUPS = Integer.getInteger("benchmark.lookups", 200000);
+    private static final int BATCH_SIZE = 1000;
+    private static final int VALUE_SIZE = 300;
+
+    @Autowired
+    private RocksDBRepositoryImpl repository;
+
+    @AfterEach
+    void tearDown() {
+        for (int from = 0; from < RECORDS; from += BATCH_SIZE) {
+            try (KeyValueBatch<byte[], byte[]> batch = repository.beginBatch()) {
+                for (int i = from; i < Math.min(from + BATCH_SIZE, RECORDS); i++)
+                    batch.delete(present(i), NODES);
+                batch.commit();
+            }
+        }
+    }
+
+    @Test
+    void measuresWritesAndLookups() throws Exception {
+        Random random = new Random(7);
+        measure("batch save", RECORDS, () -> {
+            for (int from = 0; from < RECORDS; from += BATCH_SIZE) {
+                try (KeyValueBatch<byte[], byte[]> batch = repository.beginBatch()) {
+                    for (int i = from; i < Math.min(from + BATCH_SIZE, RECORDS); i++)
+                        batch.save(present(i), value(random), NODES);
+                    assertTrue(batch.commit());
+                }
+            }
+        });
+        // lookups are measured against SST files rather than the memtable
+        repository.rocksDB.compactRange(repository.columnFamily(NODES));
+
+        measure("save", LOOKUPS / 10, () -> {
+            for (int i = 0; i < LOOKUPS / 10; i++)
+                repository.save(present(random.nextInt(RECORDS)), value(random), NODES);
+        });
+        measure("find (absent)", LOOKUPS, () -> {
+            for (int i = 0; i < LOOKUPS; i++)
+                assertNull(repository.find(absent(random.nextInt(RECORDS)), NODES));
+        });
+        measure("find (present)", LOOKUPS, () -> {
+            for (int i = 0; i < LOOKUPS; i++)
+                assertNotNull(repository.find(present(random.nextInt(RECORDS)), NODES));
+        });
+        measure("multiFind (100 keys)", LOOKUPS, () -> {
+            for (int i = 0; i < LOOKUPS / 100; i++) {
+                List<byte[]> keys = new ArrayList<>();
+                for (int k = 0; k < 100; k++)
+                    keys.add(present(random.nextInt(RECORDS)));
+                assertEquals(100, repository.multiFind(keys, NODES).size());
+            }
+        });
+    }
+
+    private static void measure(String operation, int operations, Runnable run) {
+        long start = System.nanoTime();
+        run.run();
+        long elapsed = System.nanoTime() - start;
+        log.info("{}: {} ops in {} ms, {} us/op", operation, operations, elapsed / 1_000_000, String.format("%.2f", elapsed / 1000.0 / operations));
+    }
+
+    // 25-byte keys, the size of the Base58 addresses keyed by NODES
+    private static byte[] present(int i) {
+        return String.format("bench-%019d", i).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] absent(int i) {
+        return String.format("bench-m%018d", i).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] value(Random random) {
+        byte[] value = new byte[VALUE_SIZE];
+        random.nextBytes(value);
+        return value;
+    }
+}
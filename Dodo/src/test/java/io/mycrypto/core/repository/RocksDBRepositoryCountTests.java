@@ -0,0 +1,91 @@
+package io.mycrypto.core.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static io.mycrypto.core.repository.DbName.ACCOUNTS;
+import static io.mycrypto.core.repository.DbName.NODES;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class RocksDBRepositoryCountTests {
+
+    @Autowired
+    private RocksDBRepositoryImpl repository;
+
+    // keys are unique to each test and deleted afterwards, so the counts are checked as deltas
+    private final List<byte[]> nodes = new ArrayList<>();
+    private final List<byte[]> accounts = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        nodes.forEach(key -> repository.delete(key, NODES));
+        accounts.forEach(key -> repository.delete(key, ACCOUNTS));
+    }
+
+    @Test
+    void countsSavesAndDeletes() {
+        long count = repository.getCount(NODES);
+        byte[] a = key(nodes);
+        byte[] b = key(nodes);
+
+        repository.save(a, bytes("1"), NODES);
+        repository.save(b, bytes("2"), NODES);
+        repository.save(a, bytes("3"), NODES);
+        assertEquals(count + 2, repository.getCount(NODES));
+
+        assertTrue(repository.delete(a, NODES));
+        repository.delete(key(nodes), NODES);
+        assertEquals(count + 1, repository.getCount(NODES));
+    }
+
+    @Test
+    void estimatesTheCountOfDbsThatAreNotCounted() {
+        repository.merge(key(accounts), bytes(AccountsMerge.add("tx1", 0)), ACCOUNTS);
+        assertEquals(Math.max(repository.property(ACCOUNTS, "rocksdb.estimate-num-keys"), 0L), repository.getCount(ACCOUNTS));
+    }
+
+    @Test
+    void countsWritesOfCommittedBatchesOnly() {
+        long count = repository.getCount(NODES);
+        byte[] existing = key(nodes);
+        repository.save(existing, bytes("1"), NODES);
+        byte[] a = key(nodes);
+        byte[] b = key(nodes);
+
+        try (KeyValueBatch<byte[], byte[]> batch = repository.beginBatch()) {
+            batch.save(a, bytes("2"), NODES);
+            batch.save(a, bytes("3"), NODES);
+            batch.save(b, bytes("4"), NODES);
+            batch.delete(existing, NODES);
+            assertEquals(count + 1, repository.getCount(NODES));
+            assertTrue(batch.commit());
+        }
+        assertEquals(count + 2, repository.getCount(NODES));
+
+        try (KeyValueBatch<byte[], byte[]> batch = repository.beginBatch()) {
+            batch.delete(a, NODES);
+            batch.delete(b, NODES);
+            // closed without being committed
+        }
+        assertEquals(count + 2, repository.getCount(NODES));
+    }
+
+    private static byte[] key(List<byte[]> keys) {
+        byte[] key = bytes("test-" + UUID.randomUUID());
+        keys.add(key);
+        return key;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,69 @@
+package io.mycrypto.core.repository;
+
+import io.mycrypto.core.config.DodoCommonConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.rocksdb.RocksDBException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static io.mycrypto.core.repository.DbName.ACCOUNTS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+class RocksDBRepositoryFoldTests {
+
+    @Autowired
+    private RocksDBRepositoryImpl repository;
+
+    @Autowired
+    private DodoCommonConfig config;
+
+    private final byte[] address = ("test-" + UUID.randomUUID()).getBytes(StandardCharsets.UTF_8);
+
+    @AfterEach
+    void tearDown() {
+        repository.delete(address, ACCOUNTS);
+    }
+
+    @Test
+    void readsLeaveTheOperandsAsTheyAreStored() throws RocksDBException {
+        int threshold = config.getAccountsFoldThreshold();
+        for (int i = 0; i <= threshold; i++)
+            repository.merge(address, bytes(AccountsMerge.add("tx1", i)), ACCOUNTS);
+        assertEquals(threshold, AccountsMerge.operands(stored()));
+
+        repository.find(address, ACCOUNTS);
+        repository.multiFind(List.of(address), ACCOUNTS);
+        try (KeyValueSnapshot<byte[], byte[]> snapshot = repository.openSnapshot()) {
+            snapshot.find(address, ACCOUNTS);
+        }
+        assertEquals(threshold, AccountsMerge.operands(stored()));
+    }
+
+    @Test
+    void foldsTheOperandsOnceTheEntryIsWrittenToPastTheThreshold() throws RocksDBException {
+        int threshold = config.getAccountsFoldThreshold();
+        for (int i = 0; i <= threshold + 2; i++)
+            repository.merge(address, bytes(AccountsMerge.add("tx1", i)), ACCOUNTS);
+
+        // the entry held threshold + 1 operands before the last merge, which is appended to the folded JSON
+        assertEquals(1, AccountsMerge.operands(stored()));
+        String expected = "{\"tx1\":\"" + String.join(",", IntStream.rangeClosed(0, threshold + 2).mapToObj(String::valueOf).toList()) + "\"}";
+        assertEquals(expected, new String(repository.find(address, ACCOUNTS), StandardCharsets.UTF_8));
+    }
+
+    // the entry as it is stored, operands not folded
+    private byte[] stored() throws RocksDBException {
+        return repository.multiGet(ACCOUNTS, List.of(address), null).get(0);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,36 @@
+package io.mycrypto.core.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RocksDBRepositoryPrintableTests {
+
+    @Test
+    void logsTextWithLineBreaksAsText() {
+        assertEquals("{\n  \"tx1\" : \"0,1\"\n}", RocksDBRepositoryImpl.printable(bytes("{\n  \"tx1\" : \"0,1\"\n}")));
+        assertEquals("{\"tx1\":\"0\"}\n+tx2:1\t\r", RocksDBRepositoryImpl.printable(bytes("{\"tx1\":\"0\"}\n+tx2:1\t\r")));
+    }
+
+    @Test
+    void logsRecordsOfRecordCodecInHex() {
+        byte[] record = {RecordCodec.VERSION, 0x7b, 0x0a};
+        assertEquals("0x017b0a", RocksDBRepositoryImpl.printable(record));
+    }
+
+    @Test
+    void cutsTextBetweenCharacters() {
+        // the 25th byte is the first of the two bytes of 'é'
+        String text = "a".repeat(24) + "é" + "b";
+        String printed = RocksDBRepositoryImpl.printable(bytes(text));
+        assertEquals("a".repeat(24) + " .......", printed);
+        assertTrue(RocksDBRepositoryImpl.printable(bytes("é".repeat(20))).startsWith("é".repeat(12) + " "));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,197 @@
+package io.mycrypto.core.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.mycrypto.core.config.DodoCommonConfig;
+import io.mycrypto.core.entity.Output;
+import io.mycrypto.core.entity.ScriptPublicKey;
+import io.mycrypto.core.entity.Transaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.BiPredicate;
+import java.util.function.UnaryOperator;
+
+import static io.mycrypto.core.repository.DbName.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SchemaMigratorTests {
+    private static final ObjectMapper PRETTY = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    // contents of the DBs and of the metadata the migrator reads and writes through the mocked repository
+    private final Map<DbName, NavigableMap<byte[], byte[]>> dbs = new EnumMap<>(DbName.class);
+    private final Map<String, byte[]> metadata = new HashMap<>();
+    private RocksDBRepositoryImpl repository;
+    private SchemaMigrator migrator;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        for (DbName db : List.of(TRANSACTIONS, TRANSACTIONS_POOL, ACCOUNTS))
+            dbs.put(db, new TreeMap<>(Arrays::compareUnsigned));
+
+        repository = mock(RocksDBRepositoryImpl.class);
+        when(repository.metadata(anyString())).thenAnswer(invocation -> metadata.get(invocation.<String>getArgument(0)));
+        doAnswer(invocation -> {
+            byte[] value = invocation.getArgument(1);
+            if (value == null)
+                metadata.remove(invocation.<String>getArgument(0));
+            else
+                metadata.put(invocation.getArgument(0), value);
+            return null;
+        }).when(repository).saveMetadata(anyString(), any());
+        when(repository.getCount(any())).thenAnswer(invocation -> (long) dbs.get(invocation.<DbName>getArgument(0)).size());
+        when(repository.scan(any(), any(), anyInt(), any())).thenAnswer(invocation -> {
+            byte[] from = invocation.getArgument(1);
+            int limit = invocation.getArgument(2);
+            BiPredicate<byte[], byte[]> consumer = invocation.getArgument(3);
+            NavigableMap<byte[], byte[]> entries = dbs.get(invocation.<DbName>getArgument(0));
+            int visited = 0;
+            for (Map.Entry<byte[], byte[]> entry : (from == null ? entries : entries.tailMap(from, true)).entrySet()) {
+                if (visited >= limit)
+                    break;
+                visited++;
+                if (!consumer.test(entry.getKey(), entry.getValue()))
+                    break;
+            }
+            return visited;
+        });
+        when(repository.rewrite(any(), anyList(), any())).thenAnswer(invocation -> {
+            NavigableMap<byte[], byte[]> entries = dbs.get(invocation.<DbName>getArgument(0));
+            List<byte[]> keys = invocation.getArgument(1);
+            assertFalse(keys.isEmpty(), "rewrite is not called without keys");
+            UnaryOperator<byte[]> rewrite = invocation.getArgument(2);
+            int rewritten = 0;
+            for (byte[] key : keys) {
+                byte[] stored = entries.get(key);
+                byte[] value = rewrite.apply(RocksDBRepositoryImpl.resolve(invocation.getArgument(0), stored));
+                if (!Arrays.equals(value, stored)) {
+                    entries.put(key, value);
+                    rewritten++;
+                }
+            }
+            return rewritten;
+        });
+
+        DodoCommonConfig config = mock(DodoCommonConfig.class);
+        when(config.getQueryOnly()).thenReturn(false);
+        when(config.getSchemaMigrationBatchSize()).thenReturn(2);
+
+        migrator = new SchemaMigrator();
+        ReflectionTestUtils.setField(migrator, "repository", repository);
+        ReflectionTestUtils.setField(migrator, "config", config);
+    }
+
+    @Test
+    void completesOnEmptyDbs() throws Exception {
+        migrator.initialize();
+        assertEquals(1, migrator.version());
+
+        migrate();
+
+        assertEquals(SchemaMigrator.SCHEMA_VERSION, migrator.version());
+        assertEquals(String.valueOf(SchemaMigrator.SCHEMA_VERSION), new String(metadata.get("schema-version"), StandardCharsets.UTF_8));
+        verify(repository, never()).rewrite(any(), anyList(), any());
+    }
+
+    @Test
+    void rewritesTheRecordsOfPopulatedDbs() throws Exception {
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Transaction transaction = transaction(i);
+            transactions.add(transaction);
+            dbs.get(i < 4 ? TRANSACTIONS : TRANSACTIONS_POOL).put(HexFormat.of().parseHex(transaction.getTransactionId()), PRETTY.writeValueAsBytes(transaction));
+        }
+        dbs.get(ACCOUNTS).put(bytes("address-1"), bytes("{\n  \"" + transactions.get(0).getTransactionId() + "\" : \"0,1\"\n}"));
+        dbs.get(ACCOUNTS).put(bytes("address-2"), bytes("EMPTY" + AccountsMerge.DELIMITER + AccountsMerge.add("tx", 3)));
+        dbs.get(ACCOUNTS).put(bytes("address-3"), bytes("EMPTY"));
+        migrator.initialize();
+
+        migrate();
+
+        assertEquals(SchemaMigrator.SCHEMA_VERSION, migrator.version());
+        for (Transaction transaction : transactions) {
+            byte[] key = HexFormat.of().parseHex(transaction.getTransactionId());
+            byte[] stored = dbs.get(TRANSACTIONS).containsKey(key) ? dbs.get(TRANSACTIONS).get(key) : dbs.get(TRANSACTIONS_POOL).get(key);
+            assertFalse(RecordCodec.isJson(stored));
+            assertEquals(transaction, RecordCodec.decodeTransaction(stored));
+        }
+        assertEquals("{\"" + transactions.get(0).getTransactionId() + "\":\"0,1\"}", string(dbs.get(ACCOUNTS).get(bytes("address-1"))));
+        assertEquals("{\"tx\":\"3\"}", string(dbs.get(ACCOUNTS).get(bytes("address-2"))));
+        assertEquals("EMPTY", string(dbs.get(ACCOUNTS).get(bytes("address-3"))));
+        assertNull(metadata.get("schema-migration-cursor"));
+        assertNull(metadata.get("schema-migration-db"));
+    }
+
+    @Test
+    void resumesFromTheSavedCursor() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            Transaction transaction = transaction(i);
+            dbs.get(TRANSACTIONS).put(HexFormat.of().parseHex(transaction.getTransactionId()), PRETTY.writeValueAsBytes(transaction));
+        }
+        migrator.initialize();
+        migrator.migrateNextBatch();
+        assertNotNull(metadata.get("schema-migration-cursor"));
+
+        // a restart picks up the saved cursor, so the records migrated already are not scanned again
+        SchemaMigrator restarted = new SchemaMigrator();
+        ReflectionTestUtils.setField(restarted, "repository", repository);
+        ReflectionTestUtils.setField(restarted, "config", ReflectionTestUtils.getField(migrator, "config"));
+        restarted.initialize();
+        migrator = restarted;
+        migrate();
+
+        assertEquals(SchemaMigrator.SCHEMA_VERSION, migrator.version());
+        dbs.get(TRANSACTIONS).values().forEach(value -> assertFalse(RecordCodec.isJson(value)));
+        verify(repository, times(3)).rewrite(eq(TRANSACTIONS), anyList(), any());
+    }
+
+    @Test
+    void leavesRecordsOfTheCurrentVersionAlone() {
+        metadata.put("schema-version", bytes(String.valueOf(SchemaMigrator.SCHEMA_VERSION)));
+        migrator.initialize();
+        migrator.migrateNextBatch();
+
+        assertEquals(SchemaMigrator.SCHEMA_VERSION, migrator.version());
+        verifyNoMoreInteractions(ignoreStubs(repository));
+    }
+
+    // runs the scheduled batches until the migration completes
+    private void migrate() {
+        for (int batch = 0; batch < 100 && migrator.version() < SchemaMigrator.SCHEMA_VERSION; batch++)
+            migrator.migrateNextBatch();
+    }
+
+    private static Transaction transaction(int i) {
+        Transaction transaction = new Transaction();
+        transaction.setTransactionId(String.format("%096x", i + 1));
+        transaction.setTimeStamp(1792217205374L + i);
+        transaction.setFrom("1PCRScABGJnmFK8ySqpWAZzHfjekfZmMMr");
+        transaction.setTo("15p9Fxmk3BiZ5D6atrr25hjpSdgXoJMypD");
+        transaction.setInputs(new ArrayList<>());
+        transaction.setNumInputs(0L);
+        Output output = new Output();
+        output.setAmount(new BigDecimal("43.0000"));
+        output.setN(0L);
+        output.setScriptPubKey(new ScriptPublicKey("f5a6b8bc6d6f3fbeb0dca9c2cbf73b4a9a1d4a37", "15p9Fxmk3BiZ5D6atrr25hjpSdgXoJMypD"));
+        transaction.setOutputs(new ArrayList<>(List.of(output)));
+        transaction.setNumOutputs(1L);
+        transaction.setSpent(new BigDecimal("43.0000"));
+        transaction.setTransactionFee(new BigDecimal("0.5"));
+        transaction.setMsg("Transaction " + i);
+        return transaction;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] value) {
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,120 @@
+package io.mycrypto.core.service.block;
+
+import io.mycrypto.core.config.DodoCommonConfig;
+import io.mycrypto.core.repository.KeyValueRepository;
+import io.mycrypto.core.service.block.BlockStorage.BlockLocation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BlockStorageTests {
+    private static final int RECORD_SIZE = 400 * 1024; // a 1 MB segment holds two of them
+
+    @TempDir
+    Path folder;
+    private DodoCommonConfig config;
+    private final List<BlockStorage> opened = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        config = mock(DodoCommonConfig.class);
+        when(config.getBlockFileMaxSizeMB()).thenReturn(1L);
+        when(config.getBlockFileMappedSegments()).thenReturn(1);
+        when(config.getQueryOnly()).thenReturn(false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        opened.forEach(BlockStorage::close);
+    }
+
+    @Test
+    void appendsLocatesAndReadsBlocksAcrossSegments() throws IOException {
+        BlockStorage storage = open();
+        List<byte[]> records = new ArrayList<>();
+        List<BlockLocation> locations = new ArrayList<>();
+        for (int height = 0; height < 5; height++) {
+            records.add(record(height));
+            locations.add(storage.append(height, records.get(height)));
+        }
+
+        assertEquals(List.of(0, 0, 1, 1, 2), locations.stream().map(BlockLocation::file).toList());
+        assertEquals(new BlockLocation(1, RECORD_SIZE, RECORD_SIZE), locations.get(3));
+        assertTrue(Files.isRegularFile(folder.resolve("blk00002.dat")));
+        assertTrue(storage.isAppendedTo(folder.resolve("blk00002.dat")));
+        assertFalse(storage.isAppendedTo(folder.resolve("blk00001.dat")));
+
+        // only one segment stays mapped, so reading them in turn maps them again
+        for (int height = 4; height >= 0; height--) {
+            assertEquals(locations.get(height), storage.locate(height));
+            assertEquals(ByteBuffer.wrap(records.get(height)), storage.read(locations.get(height)));
+            assertEquals(ByteBuffer.wrap(records.get(height)), storage.read(locations.get(height).encode()));
+        }
+        assertThrows(FileNotFoundException.class, () -> storage.locate(5));
+        assertThrows(FileNotFoundException.class, () -> storage.locate(-1));
+    }
+
+    @Test
+    void readsBlocksAppendedAfterTheSegmentWasMapped() throws IOException {
+        BlockStorage storage = open();
+        BlockLocation first = storage.append(0, record(0));
+        storage.read(first);
+
+        byte[] second = record(1);
+        assertEquals(ByteBuffer.wrap(second), storage.read(storage.append(1, second)));
+    }
+
+    @Test
+    void continuesTheLastSegmentOnceReopened() throws IOException {
+        BlockStorage storage = open();
+        for (int height = 0; height < 3; height++)
+            storage.append(height, record(height));
+        storage.close();
+
+        BlockStorage reopened = open();
+        BlockLocation location = reopened.append(3, record(3));
+        assertEquals(new BlockLocation(1, RECORD_SIZE, RECORD_SIZE), location);
+        assertEquals(ByteBuffer.wrap(record(0)), reopened.read(reopened.locate(0)));
+    }
+
+    @Test
+    void replacesTheBlockOfAHeightWrittenAgain() throws IOException {
+        BlockStorage storage = open();
+        storage.append(0, record(0));
+        BlockLocation again = storage.append(0, record(7));
+
+        assertEquals(again, storage.locate(0));
+        assertEquals(ByteBuffer.wrap(record(7)), storage.read(storage.locate(0)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private BlockStorage open() {
+        BlockStorage storage = new BlockStorage(folder);
+        ReflectionTestUtils.setField(storage, "config", config);
+        ReflectionTestUtils.setField(storage, "rocksDB", mock(KeyValueRepository.class));
+        storage.initialize();
+        opened.add(storage);
+        return storage;
+    }
+
+    private static byte[] record(long seed) {
+        byte[] record = new byte[RECORD_SIZE];
+        new Random(seed).nextBytes(record);
+        return record;
+    }
+}